@@ -0,0 +1,230 @@
+package org.jkva;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.settings.Settings;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
+
+/**
+ * Measures the orchestration overhead of a release, separate from the build time: runs the whole release goal on a
+ * generated workspace on disk, with M2_BIN pointing to a stub that only prints output and sleeps. Needs no network
+ * and no repository manager.
+ * <p/>
+ * Options are given as key=value arguments, see {@link #DEFAULTS}. M2_BIN can only be set for a new process, so the
+ * benchmark starts itself again with the stub in the environment.
+ */
+public class EndToEndBenchmark {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<String, String>();
+
+    static {
+        DEFAULTS.put("projects", "100");
+        DEFAULTS.put("workers", "1");
+        DEFAULTS.put("updateThreads", "4");
+        DEFAULTS.put("releaseMode", "standard");
+        DEFAULTS.put("tuneForks", "true");
+        DEFAULTS.put("pipelinedDeploy", "false");
+        DEFAULTS.put("deployThreads", "2");
+        DEFAULTS.put("runs", "3");
+        DEFAULTS.put("forkMillis", "100");
+        DEFAULTS.put("outputLines", "200");
+        DEFAULTS.put("uploads", "5");
+        DEFAULTS.put("uploadMillis", "0");
+        DEFAULTS.put("dir", new File(System.getProperty("java.io.tmpdir"), "cascading-release-e2e").getPath());
+        DEFAULTS.put("verbose", "false");
+    }
+
+    private static final String CHILD_MARKER = "CASCADING_RELEASE_E2E";
+
+    private final Map<String, String> options;
+    private final File dir;
+
+    private EndToEndBenchmark(Map<String, String> options) {
+        this.options = options;
+        this.dir = new File(options.get("dir")).getAbsoluteFile();
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = new LinkedHashMap<String, String>(DEFAULTS);
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator < 0 || !DEFAULTS.containsKey(arg.substring(0, separator))) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", the options are " + DEFAULTS);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        final EndToEndBenchmark benchmark = new EndToEndBenchmark(options);
+        if (System.getenv(CHILD_MARKER) == null) {
+            System.exit(benchmark.startWithStub(args));
+        }
+        benchmark.run();
+    }
+
+    private int startWithStub(String[] args) throws IOException, InterruptedException {
+        final File stub = new File(dir, "stub-mvn");
+        Files.createParentDirs(stub);
+        Files.write(Resources.toString(Resources.getResource(getClass(), "stub-mvn"), Charsets.UTF_8), stub,
+                Charsets.UTF_8);
+        if (!stub.setExecutable(true)) {
+            throw new IOException("Can't make the stub executable: " + stub);
+        }
+
+        final List<String> command = new ArrayList<String>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(getClass().getName());
+        for (String arg : args) {
+            command.add(arg);
+        }
+        final ProcessBuilder processBuilder = new ProcessBuilder(command).inheritIO();
+        final Map<String, String> environment = processBuilder.environment();
+        environment.put(CHILD_MARKER, "true");
+        environment.put("M2_BIN", stub.getPath());
+        environment.put("STUB_MVN_SLEEP", String.format(Locale.ROOT, "%.3f",
+                Integer.parseInt(options.get("forkMillis")) / 1000.0));
+        environment.put("STUB_MVN_OUTPUT_LINES", options.get("outputLines"));
+        environment.put("STUB_MVN_UPLOADS", options.get("uploads"));
+        environment.put("STUB_MVN_SLEEP_UPLOAD", String.format(Locale.ROOT, "%.3f",
+                Integer.parseInt(options.get("uploadMillis")) / 1000.0));
+        return processBuilder.start().waitFor();
+    }
+
+    private void run() throws Exception {
+        System.out.println("End-to-end release with " + options);
+        System.out.println(String.format("%4s %8s %6s %12s %12s %12s %10s %8s", "run", "modules", "forks",
+                "total (ms)", "forks (ms)", "output (KB)", "heap (MB)", "threads"));
+        for (int run = 1; run <= Integer.parseInt(options.get("runs")); run++) {
+            runOnce(run);
+        }
+    }
+
+    private void runOnce(int run) throws Exception {
+        final File workspace = new File(dir, "workspace");
+        final File state = new File(dir, "state");
+        deleteRecursively(workspace);
+        deleteRecursively(state);
+        deleteRecursively(new File(dir, "workers"));
+
+        final SyntheticReactor reactor = new SyntheticReactor(workspace, Integer.parseInt(options.get("projects")));
+        reactor.writePoms();
+        final CascadingReleaseMojo mojo = createMojo(reactor, state);
+
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.gc();
+        threads.resetPeakThreadCount();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        final long startTime = System.currentTimeMillis();
+        mojo.execute();
+        final long totalMillis = System.currentTimeMillis() - startTime;
+
+        final Map<String, Object> metrics = mojo.metrics.toMap();
+        long forkMillis = 0;
+        for (Object fork : ((Map<?, ?>) metrics.get("forks")).values()) {
+            forkMillis += ((Number) ((Map<?, ?>) fork).get("totalMillis")).longValue();
+        }
+        System.out.println(String.format("%4d %8d %6s %12d %12d %12d %10d %8d", run, countReleasedModules(state),
+                metrics.get("forkCount"), totalMillis, forkMillis,
+                ((Number) metrics.get("outputBytes")).longValue() / 1024, getPeakHeapUsage() / (1024 * 1024),
+                threads.getPeakThreadCount()));
+    }
+
+    private CascadingReleaseMojo createMojo(SyntheticReactor reactor, File state) throws Exception {
+        final CascadingReleaseMojo mojo = new CascadingReleaseMojo();
+        final boolean verbose = Boolean.parseBoolean(options.get("verbose"));
+        mojo.setLog(new DefaultLog(new ConsoleLogger(verbose ? Logger.LEVEL_INFO : Logger.LEVEL_WARN, "release")));
+
+        final Settings settings = new Settings();
+        settings.setInteractiveMode(false);
+        final MavenProject root = reactor.getRoot();
+        set(mojo, "reactorProjects", reactor.getProjects());
+        set(mojo, "basedir", root.getBasedir());
+        set(mojo, "distPath", reactor.getDist().getBasedir().getName());
+        set(mojo, "workers", Integer.parseInt(options.get("workers")));
+        set(mojo, "updateThreads", Integer.parseInt(options.get("updateThreads")));
+        set(mojo, "releaseMode", options.get("releaseMode"));
+        set(mojo, "tuneForks", Boolean.parseBoolean(options.get("tuneForks")));
+        set(mojo, "pipelinedDeploy", Boolean.parseBoolean(options.get("pipelinedDeploy")));
+        set(mojo, "deployThreads", Integer.parseInt(options.get("deployThreads")));
+        set(mojo, "project", root);
+        set(mojo, "session", reactor.createSession());
+        set(mojo, "settings", settings);
+        set(mojo, "timingHistoryFile", new File(state, "timing-history.txt"));
+        set(mojo, "outputFile", new File(state, "release-summary.txt"));
+        set(mojo, "reportFile", new File(state, "release-report.jsonl"));
+        set(mojo, "journalFile", new File(state, "release-journal.txt"));
+        set(mojo, "metricsFile", new File(state, "release-metrics.json"));
+        set(mojo, "prometheusFile", new File(state, "release-metrics.prom"));
+        set(mojo, "executionBackend", "fork");
+        set(mojo, "scmProvider", "auto");
+        set(mojo, "versionPolicy", "default");
+        set(mojo, "tagNameFormat", "@{project.artifactId}-@{project.version}");
+        set(mojo, "verificationCacheDirectory", new File(state, "verification-cache"));
+        set(mojo, "verificationCacheSize", 0);
+        set(mojo, "workersDirectory", new File(dir, "workers"));
+        return mojo;
+    }
+
+    /**
+     * Set a parameter, like Maven does when it configures the mojo.
+     */
+    private static void set(Object mojo, String name, Object value) throws IllegalAccessException {
+        for (Class<?> type = mojo.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                final Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(mojo, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                // Declared in a superclass
+            }
+        }
+        throw new IllegalArgumentException("Unknown parameter: " + name);
+    }
+
+    private int countReleasedModules(File state) throws IOException {
+        return Files.readLines(new File(state, "release-report.jsonl"), Charsets.UTF_8).size();
+    }
+
+    private long getPeakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void deleteRecursively(File file) throws IOException {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                deleteRecursively(child);
+            }
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Can't delete " + file);
+        }
+    }
+}
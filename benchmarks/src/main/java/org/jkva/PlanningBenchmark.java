@@ -0,0 +1,112 @@
+package org.jkva;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * How planning a release scales with the size of the reactor: reading the configuration, indexing it, the lookups
+ * in {@link ConfigUtil} and building the {@link ReleaseGraph} of the dist project.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlanningBenchmark {
+
+    private static final String DIST_PATH = "dist";
+
+    @Param({"100", "1000", "10000"})
+    private int reactorSize;
+
+    private SyntheticReactor reactor;
+    private MavenSession session;
+    private Log log;
+    private Config config;
+    private ConfigUtil configUtil;
+    private ProjectModule distModule;
+
+    @Setup
+    public void setUp() throws MojoFailureException {
+        reactor = new SyntheticReactor(reactorSize);
+        session = reactor.createSession();
+        log = new DefaultLog(new ConsoleLogger(Logger.LEVEL_DISABLED, "benchmark"));
+        config = readConfig();
+        configUtil = new ConfigUtil(config, log, session);
+        distModule = configUtil.getProjectModuleFromMavenProject(reactor.getDist());
+    }
+
+    private Config readConfig() throws MojoFailureException {
+        final Config ret = new ConfigFileReader(log, reactor.getRoot())
+                .readConfigFile(null, DIST_PATH, reactor.getProjects());
+        ret.setBasedir(reactor.getBaseDir());
+        return ret;
+    }
+
+    @Benchmark
+    public Config readConfigFile() throws MojoFailureException {
+        return readConfig();
+    }
+
+    @Benchmark
+    public ConfigUtil createConfigIndex() throws MojoFailureException {
+        return new ConfigUtil(config, log, session);
+    }
+
+    @Benchmark
+    public List<ProjectModule> getFlatListOfAllModules() {
+        return ConfigUtil.getFlatListOfAllModules(config.getModules());
+    }
+
+    @Benchmark
+    public void getModuleForDependency(Blackhole blackhole) {
+        for (Dependency dependency : reactor.getDependencies()) {
+            blackhole.consume(configUtil.getModuleForDependency(dependency));
+        }
+    }
+
+    /**
+     * Traversing the whole reactor without the cache.
+     */
+    @Benchmark
+    public List<?> getAllModules() throws MojoFailureException {
+        configUtil.invalidateTraversalCache();
+        return configUtil.getAllModules(reactor.getRoot());
+    }
+
+    @Benchmark
+    public List<?> getAllModulesCached() throws MojoFailureException {
+        return configUtil.getAllModules(reactor.getRoot());
+    }
+
+    /**
+     * Determining what to release and in which order, before the first fork is started.
+     */
+    @Benchmark
+    public List<ProjectModule> planRelease() throws MojoFailureException {
+        configUtil.invalidateTraversalCache();
+        final ReleaseGraph graph = new ReleaseGraphBuilder(config, log, configUtil).createReleaseGraph(distModule);
+        return graph.getTopologicalOrder();
+    }
+}
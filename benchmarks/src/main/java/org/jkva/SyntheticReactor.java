@@ -0,0 +1,211 @@
+package org.jkva;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.project.MavenProject;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * An in-memory reactor of a given number of projects, shaped like the projects the plugin is used for:
+ * <pre>
+ * root                    aggregator of everything
+ *  + parent               SNAPSHOT parent of all releasable projects
+ *  + group-N              multi-module project, released as a whole
+ *     + group-N-comp-M    aggregator inside the group
+ *        + group-N-comp-M-lib-K
+ *  + dist                 the project that is released, depends on every group
+ * </pre>
+ * Every library depends on a sibling in its own group, on a few libraries of earlier groups (all SNAPSHOT) and on a
+ * released external library. The POM files only exist after {@link #writePoms()}, otherwise only their paths are
+ * used.
+ */
+public class SyntheticReactor {
+
+    static final String GROUP_ID = "com.example.synthetic";
+    static final String SNAPSHOT_VERSION = "1.0-SNAPSHOT";
+
+    private static final int COMPONENTS_PER_GROUP = 3;
+    private static final int LIBRARIES_PER_COMPONENT = 2;
+    private static final int PROJECTS_PER_GROUP = 1 + COMPONENTS_PER_GROUP * (1 + LIBRARIES_PER_COMPONENT);
+    private static final int MAX_FAN_OUT = 4;
+
+    private final File baseDir;
+    private final MavenProject root;
+    private final MavenProject dist;
+    private final List<MavenProject> projects = new ArrayList<MavenProject>();
+    private final List<Dependency> dependencies = new ArrayList<Dependency>();
+    private final Random random = new Random(42);
+
+    /**
+     * @param size the approximate number of projects in the reactor
+     */
+    public SyntheticReactor(int size) {
+        this(new File(System.getProperty("java.io.tmpdir"), "synthetic-reactor-" + size), size);
+    }
+
+    /**
+     * @param baseDir the directory of the root project
+     * @param size    the approximate number of projects in the reactor
+     */
+    public SyntheticReactor(File baseDir, int size) {
+        this.baseDir = baseDir;
+        root = createProject(null, baseDir, "root", "pom");
+        final MavenProject parent = createProject(root, new File(baseDir, "parent"), "parent", "pom");
+        parent.setParent(null);
+
+        final List<List<MavenProject>> libraries = new ArrayList<List<MavenProject>>();
+        final int groups = Math.max(1, (size - 3) / PROJECTS_PER_GROUP);
+        for (int g = 0; g < groups; g++) {
+            final String groupName = "group-" + g;
+            final MavenProject group = createProject(root, new File(baseDir, groupName), groupName, "pom");
+            group.setParent(parent);
+            final List<MavenProject> groupLibraries = new ArrayList<MavenProject>();
+            for (int c = 0; c < COMPONENTS_PER_GROUP; c++) {
+                final String componentName = groupName + "-comp-" + c;
+                final MavenProject component = createProject(group, new File(group.getBasedir(), componentName),
+                        componentName, "pom");
+                for (int l = 0; l < LIBRARIES_PER_COMPONENT; l++) {
+                    final String libraryName = componentName + "-lib-" + l;
+                    final MavenProject library = createProject(component,
+                            new File(component.getBasedir(), libraryName), libraryName, "jar");
+                    addDependencies(library, groupLibraries, libraries);
+                    groupLibraries.add(library);
+                }
+            }
+            libraries.add(groupLibraries);
+        }
+
+        dist = createProject(root, new File(baseDir, "dist"), "dist", "pom");
+        dist.setParent(parent);
+        for (List<MavenProject> groupLibraries : libraries) {
+            addDependency(dist, groupLibraries.get(groupLibraries.size() - 1), SNAPSHOT_VERSION);
+        }
+    }
+
+    private MavenProject createProject(MavenProject aggregator, File directory, String artifactId, String packaging) {
+        final MavenProject project = new MavenProject();
+        project.setGroupId(GROUP_ID);
+        project.setArtifactId(artifactId);
+        project.setVersion(SNAPSHOT_VERSION);
+        project.setPackaging(packaging);
+        project.setFile(new File(directory, "pom.xml"));
+        if (aggregator != null) {
+            aggregator.getModel().addModule(directory.getName());
+            project.setParent(aggregator);
+        }
+        projects.add(project);
+        return project;
+    }
+
+    private void addDependencies(MavenProject library, List<MavenProject> siblings,
+                                 List<List<MavenProject>> earlierGroups) {
+        if (!siblings.isEmpty()) {
+            addDependency(library, siblings.get(siblings.size() - 1), SNAPSHOT_VERSION);
+        }
+        if (!earlierGroups.isEmpty()) {
+            final int fanOut = 1 + random.nextInt(MAX_FAN_OUT);
+            for (int i = 0; i < fanOut; i++) {
+                final List<MavenProject> group = earlierGroups.get(random.nextInt(earlierGroups.size()));
+                addDependency(library, group.get(random.nextInt(group.size())), SNAPSHOT_VERSION);
+            }
+        }
+        final Dependency external = new Dependency();
+        external.setGroupId("com.google.guava");
+        external.setArtifactId("guava");
+        external.setVersion("14.0.1");
+        library.getModel().addDependency(external);
+    }
+
+    private void addDependency(MavenProject project, MavenProject dependencyProject, String version) {
+        final Dependency dependency = new Dependency();
+        dependency.setGroupId(dependencyProject.getGroupId());
+        dependency.setArtifactId(dependencyProject.getArtifactId());
+        dependency.setVersion(version);
+        project.getModel().addDependency(dependency);
+        dependencies.add(dependency);
+    }
+
+    /**
+     * Write the POMs of all projects, for the builds that read or change them.
+     */
+    public void writePoms() throws IOException {
+        final MavenXpp3Writer writer = new MavenXpp3Writer();
+        for (MavenProject project : projects) {
+            final Model model = project.getModel().clone();
+            final MavenProject parent = project.getParent();
+            if (parent != null) {
+                final Parent parentElement = new Parent();
+                parentElement.setGroupId(parent.getGroupId());
+                parentElement.setArtifactId(parent.getArtifactId());
+                parentElement.setVersion(parent.getVersion());
+                parentElement.setRelativePath(getRelativePath(project.getBasedir(), parent.getBasedir()) + "/pom.xml");
+                model.setParent(parentElement);
+            }
+            project.getBasedir().mkdirs();
+            final Writer out = Files.newWriter(project.getFile(), Charsets.UTF_8);
+            try {
+                writer.write(out, model);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    private String getRelativePath(File from, File to) {
+        final String toPath = to.getPath();
+        String up = "..";
+        for (File dir = from.getParentFile(); dir != null; dir = dir.getParentFile(), up += "/..") {
+            if (dir.getPath().equals(toPath)) {
+                return up;
+            }
+            if (toPath.startsWith(dir.getPath() + File.separator)) {
+                return up + toPath.substring(dir.getPath().length()).replace(File.separatorChar, '/');
+            }
+        }
+        return toPath;
+    }
+
+    public MavenSession createSession() {
+        final MavenSession session = new MavenSession(null, null, new DefaultMavenExecutionRequest(),
+                new DefaultMavenExecutionResult());
+        session.setProjects(projects);
+        return session;
+    }
+
+    public File getBaseDir() {
+        return baseDir;
+    }
+
+    public MavenProject getRoot() {
+        return root;
+    }
+
+    public MavenProject getDist() {
+        return dist;
+    }
+
+    public List<MavenProject> getProjects() {
+        return projects;
+    }
+
+    /**
+     * @return all dependencies on projects in the reactor
+     */
+    public List<Dependency> getDependencies() {
+        return dependencies;
+    }
+}
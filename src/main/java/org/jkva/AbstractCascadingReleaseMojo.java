@@ -0,0 +1,132 @@
+package org.jkva;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.artifact.Artifact;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.settings.Settings;
+
+import static org.jkva.ConfigUtil.createProjectIdentifier;
+
+/**
+ * The configuration that all goals of the plugin share.
+ */
+public abstract class AbstractCascadingReleaseMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
+    protected List<MavenProject> reactorProjects;
+
+    @Parameter(property = "basedir", required = true, defaultValue = "${basedir}")
+    protected File basedir;
+
+    @Parameter(property = "parentPath")
+    protected String parentPath;
+
+    @Parameter(property = "distPath", defaultValue = "")
+    protected String distPath;
+
+    /**
+     * The number of modules that may be released at the same time. With more than one worker, every worker releases
+     * in its own checkout of the project, created in the workersDirectory.
+     */
+    @Parameter(property = "workers", defaultValue = "1")
+    protected int workers;
+
+    /**
+     * "standard" verifies every module with clean install before releasing it, and lets release:perform run the
+     * tests again. "single-build" only runs the tests in the verification build of release:prepare, which builds
+     * the sources that are tagged, and deploys from a build of the tag with the tests skipped.
+     */
+    @Parameter(property = "releaseMode", defaultValue = "standard")
+    protected String releaseMode;
+
+    /**
+     * The durations of the release steps of earlier runs, used for estimating how long a release takes.
+     */
+    @Parameter(property = "timingHistoryFile", defaultValue = "${user.home}/.cascading-release/${project.artifactId}/timing-history.txt", required = true)
+    protected File timingHistoryFile;
+
+    /**
+     * The release plan, approved for unattended runs: the plan goal writes it, the release goal only releases when
+     * the file approves its plan. Without it, the plan is approved once at the start, see {@link ReleaseApproval}.
+     */
+    @Parameter(property = "approvalFile")
+    protected File approvalFile;
+
+    @Component
+    protected MavenProject project;
+
+    @Component
+    protected MavenSession session;
+
+    @Parameter( defaultValue = "${settings}", readonly = true, required = true )
+    protected Settings settings;
+
+    protected Config config;
+    protected ConfigUtil configUtil;
+    protected final ReleaseMetrics metrics = new ReleaseMetrics();
+
+    /**
+     * Read the modules of the project and their dependencies.
+     */
+    protected void readConfiguration() throws MojoFailureException {
+        PromptUtil.settings = settings;
+        PromptUtil.metrics = metrics;
+        long startTime = System.currentTimeMillis();
+        ConfigFileReader configFileReader = new ConfigFileReader(getLog(), project);
+        config = configFileReader.readConfigFile(parentPath, distPath, reactorProjects);
+        config.setBasedir(basedir);
+        configFileReader.outputConfig(config);
+        metrics.recordPhase("readConfig", System.currentTimeMillis() - startTime);
+
+        startTime = System.currentTimeMillis();
+        configUtil = new ConfigUtil(config, getLog(), session);
+        metrics.recordPhase("configIndex", System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Everything the release will do that needs approval: releasing the parent and the modules in the graph, and
+     * releasing with parents that are used in other than the latest version.
+     */
+    protected ReleaseApproval createReleaseApproval(ReleaseGraph graph) throws MojoFailureException {
+        final ReleaseApproval approval = new ReleaseApproval(getLog());
+        final Map<String, Set<String>> versionsPerParentPom = configUtil.getVersionsPerParentPom();
+        for (Map.Entry<String, Set<String>> entry : versionsPerParentPom.entrySet()) {
+            if (entry.getValue().size() > 1) {
+                approval.addWarning("modules use parent " + entry.getKey() + " in different versions "
+                        + new TreeSet<String>(entry.getValue()));
+            }
+        }
+        if (config.getParentPath() != null && !versionsPerParentPom.isEmpty()) {
+            final MavenProject parentProject = configUtil.getMavenProjectFromPath(config.getParentPath());
+            final String parentKey = createProjectIdentifier(parentProject);
+            final Set<String> usedVersions = versionsPerParentPom.get(parentKey);
+            if (usedVersions != null && usedVersions.size() == 1 && !usedVersions.contains(parentProject.getVersion())) {
+                approval.addWarning("modules use parent " + parentKey + " " + usedVersions.iterator().next()
+                        + " instead of the latest version " + parentProject.getVersion());
+            }
+            final Artifact parentArtifact = project.getParentArtifact();
+            if (parentArtifact != null && parentArtifact.isSnapshot()) {
+                approval.addRelease(createProjectIdentifier(parentArtifact.getGroupId(), parentArtifact.getArtifactId()));
+            }
+        }
+        for (ProjectModule module : graph.getTopologicalOrder()) {
+            approval.addRelease(createProjectIdentifier(module));
+        }
+        return approval;
+    }
+
+    protected ReleaseMode getReleaseMode() throws MojoFailureException {
+        return ReleaseMode.fromName(releaseMode);
+    }
+}
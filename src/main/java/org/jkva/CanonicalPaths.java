@@ -0,0 +1,30 @@
+package org.jkva;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Remembers the canonical paths of files, so every path is resolved on the file system only once. Resolving a
+ * canonical path takes a system call for every part of the path.
+ */
+public class CanonicalPaths {
+
+    private final Map<File, String> canonicalPaths = new HashMap<File, String>();
+
+    public synchronized String getCanonicalPath(File file) throws MojoFailureException {
+        String canonicalPath = canonicalPaths.get(file);
+        if (canonicalPath == null) {
+            try {
+                canonicalPath = file.getCanonicalPath();
+            } catch (IOException e) {
+                throw new MojoFailureException("Can't determine canonical path of: " + file, e);
+            }
+            canonicalPaths.put(file, canonicalPath);
+        }
+        return canonicalPath;
+    }
+}
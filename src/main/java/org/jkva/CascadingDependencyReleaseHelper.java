@@ -1,18 +1,17 @@
 package org.jkva;
 
-import com.google.common.collect.ImmutableList;
-import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 import static org.jkva.ConfigUtil.createProjectIdentifier;
 
@@ -24,131 +23,199 @@ public class CascadingDependencyReleaseHelper {
     private final Config config;
     private final Log log;
 
-    private final Set<ProjectModule> releasedModules = new HashSet<ProjectModule>();
     private final ConfigUtil configUtil;
     private final ReleasedModuleTracker releasedModuleTracker;
-
-    public CascadingDependencyReleaseHelper(ProcessFactory processFactory, Config config, Log log, ConfigUtil configUtil, ReleasedModuleTracker releasedModuleTracker) {
+    private final WorkingCopyPool workingCopyPool;
+    private final ReleaseJournal journal;
+    private final PomVersionRewriter pomVersionRewriter;
+    private final ScmCommitBatch commitBatch;
+    private final VersionPlan versionPlan;
+    private final ChangeDetector changeDetector;
+    private final VerificationCache verificationCache;
+    private final ReleaseMode releaseMode;
+    private final PomUpdateFanOut pomUpdateFanOut;
+    private final ReleaseApproval approval;
+    private final DeployPipeline deployPipeline;
+    private final Map<ProjectModule, String> unchangedModules = new HashMap<ProjectModule, String>();
+
+    public CascadingDependencyReleaseHelper(ProcessFactory processFactory, Config config, Log log, ConfigUtil configUtil,
+                                            ReleasedModuleTracker releasedModuleTracker, WorkingCopyPool workingCopyPool,
+                                            ReleaseJournal journal, ScmCommitBatch commitBatch, VersionPlan versionPlan,
+                                            ChangeDetector changeDetector, VerificationCache verificationCache,
+                                            ReleaseMode releaseMode, PomUpdateFanOut pomUpdateFanOut,
+                                            ReleaseApproval approval, DeployPipeline deployPipeline) {
         this.processFactory = processFactory;
         this.config = config;
         this.log = log;
         this.configUtil = configUtil;
         this.releasedModuleTracker = releasedModuleTracker;
+        this.workingCopyPool = workingCopyPool;
+        this.journal = journal;
+        this.pomVersionRewriter = new PomVersionRewriter(log);
+        this.commitBatch = commitBatch;
+        this.versionPlan = versionPlan;
+        this.changeDetector = changeDetector;
+        this.verificationCache = verificationCache;
+        this.releaseMode = releaseMode;
+        this.pomUpdateFanOut = pomUpdateFanOut;
+        this.approval = approval;
+        this.deployPipeline = deployPipeline;
     }
 
-    public void releaseDependencies(MavenProject project) throws MojoFailureException {
-        log.info("About to release " + project.toString());
-        Set<ProjectModule> releasableModules = determineReleasableModules(project);
-
-        for (ProjectModule module : releasableModules) {
-            log.info("Releasing SNAPSHOT module " + module.getArtifactId());
-            releaseModuleAndUpdateDependencies(module);
+    /**
+     * Release all modules in the graph. Modules are released as soon as all their upstream modules are released and
+     * the POMs depending on them are updated.
+     */
+    public void release(final ReleaseGraph graph) throws MojoFailureException {
+        determineUnchangedModules(graph);
+
+        log.info("Planned versions: ");
+        for (ProjectModule module : graph.getTopologicalOrder()) {
+            if (!unchangedModules.containsKey(module)
+                    && !releasedModuleTracker.containsReleasedModule(module.getGroupId(), module.getArtifactId())) {
+                versionPlan.plan(module);
+            }
         }
-    }
 
-    private Set<ProjectModule> determineReleasableModules(MavenProject mavenProject) throws MojoFailureException {
-        List<Dependency> allModuleDependencies = configUtil.getDependenciesForAllModules(mavenProject);
+        // Before anything is released, not halfway the cascade
+        for (ProjectModule module : graph.getTopologicalOrder()) {
+            releaseMode.checkSupported(createProjectIdentifier(module), module.getRelatedMavenProject());
+            if (deployPipeline != null) {
+                deployPipeline.checkSupported(createProjectIdentifier(module), module.getRelatedMavenProject());
+            }
+        }
 
-        //LinkedHashSet to retain the correct order
-        Set<ProjectModule> releasableDependencies = new LinkedHashSet<ProjectModule>();
-        Set<Dependency> nonReleasableDependencies = new LinkedHashSet<Dependency>();
-        for (Dependency dependency : allModuleDependencies) {
-            if (isSnapshot(dependency)) {
-                final ProjectModule module = getReleasableDependency(dependency);
-                if (module != null) {
-                    if (!isMultiModuleBuildInternalDependency(dependency, mavenProject)) {
-                        ProjectModule moduleToRelease;
-                        if (module.getReleasableParent() != null) {
-                            moduleToRelease = module.getReleasableParent();
-                        } else {
-                            moduleToRelease = module;
-                        }
-                        if (!releasedModules.contains(moduleToRelease)) {
-                            releasableDependencies.add(moduleToRelease);
-                        }
+        final ReleaseScheduler scheduler = new ReleaseScheduler(log, workingCopyPool);
+        scheduler.run(graph, new ReleaseScheduler.ReleaseTask() {
+            /**
+             * A prepared release only exists in the working copy that prepared it: release.properties and the
+             * checkout of the tag. On resume the module has to continue there.
+             */
+            public File getWorkingCopy(ProjectModule module) throws MojoFailureException {
+                final String moduleKey = createProjectIdentifier(module);
+                if (!journal.isCompleted(moduleKey, ReleaseStep.PREPARE)) {
+                    return null;
+                }
+                final String workingCopy = journal.getDetail(moduleKey, ReleaseStep.PREPARE);
+                if (workingCopy == null || workingCopy.isEmpty()) {
+                    if (workingCopyPool.isShared()) {
+                        return null;
                     }
-                } else {
-                    nonReleasableDependencies.add(dependency);
+                    throw new MojoFailureException("The journal doesn't tell which working copy " + moduleKey
+                            + " was prepared in. Resume it with workers=1");
                 }
+                return new File(workingCopy);
             }
-        }
-        log.info("Dependencies that need to be released: ");
-        for (ProjectModule releasableDependency : releasableDependencies) {
-            log.info(" + " + createProjectIdentifier(releasableDependency));
-        }
-        if (!nonReleasableDependencies.isEmpty()) {
-            throw new MojoFailureException("Cannot release because of external SNAPSHOT dependencies: [" + nonReleasableDependencies + "]");
-        }
-
-        return releasableDependencies;
-    }
 
-    private boolean isMultiModuleBuildInternalDependency(Dependency dependency, MavenProject mavenProject) throws MojoFailureException {
-        final String dependencyKey = createProjectIdentifier(dependency);
-        final List<MavenProject> allModules = configUtil.getAllModules(mavenProject);
-        for (MavenProject module : allModules) {
-            if (createProjectIdentifier(module).equals(dependencyKey)) {
-                return true;
+            public List<ProjectModule> release(ProjectModule module, File workingCopy) throws MojoFailureException {
+                final String unchangedReleaseVersion = unchangedModules.get(module);
+                if (unchangedReleaseVersion != null) {
+                    log.info("Using existing release " + unchangedReleaseVersion + " of unchanged module " + module.getArtifactId());
+                    return useExistingRelease(module, unchangedReleaseVersion);
+                }
+                log.info("Releasing SNAPSHOT module " + module.getArtifactId());
+                return releaseModule(module, workingCopy, getUpstreamVersions(graph, module));
             }
-        }
-        return false;
-    }
 
-    private ProjectModule getReleasableDependency(Dependency dependency) {
-        final ProjectModule module = configUtil.getModuleForDependency(dependency);
+            public void afterRelease(ProjectModule module, List<ProjectModule> releasedModules) throws MojoFailureException {
+                if (!workingCopyPool.isShared()) {
+                    // The release was made in another working copy, get its commits before changing any POMs
+                    final String moduleKey = createProjectIdentifier(module);
+                    final String workingCopy = journal.getDetail(moduleKey, ReleaseStep.PREPARE);
+                    if (!commitBatch.isPushDeferred()) {
+                        processFactory.createMavenInvoker("").execute("scm:update");
+                    } else if (workingCopy != null && !workingCopy.isEmpty()) {
+                        commitBatch.merge(moduleKey, new File(workingCopy));
+                    }
+                }
+                updateChildren(module, graph.getDownstreams(module));
+                updateProjectsWithLatestDependencyVersions(releasedModules);
+            }
 
-        return module;
+            public void afterWave(List<ProjectModule> modules) throws MojoFailureException {
+                if (deployPipeline != null) {
+                    deployPipeline.checkFailures();
+                }
+                commitBatch.commit();
+            }
+        });
     }
 
-    private boolean isSnapshot(Dependency dependency) {
-        final String version = dependency.getVersion();
-        return isSnapshot(version);
+    /**
+     * Find the modules that didn't change since their last release, of which all upstream modules didn't change
+     * either. Their dependents can use the last release, so they don't have to be released again.
+     */
+    private void determineUnchangedModules(ReleaseGraph graph) throws MojoFailureException {
+        if (changeDetector == null) {
+            return;
+        }
+        for (ProjectModule module : graph.getTopologicalOrder()) {
+            if (unchangedModules.keySet().containsAll(graph.getUpstreams(module))) {
+                final String releaseVersion = changeDetector.getUnchangedReleaseVersion(module);
+                if (releaseVersion != null) {
+                    log.info(createProjectIdentifier(module) + " didn't change since release " + releaseVersion
+                            + ", it is not released again");
+                    unchangedModules.put(module, releaseVersion);
+                }
+            }
+        }
     }
 
-    private boolean isSnapshot(String version) {
-        return version.contains("-SNAPSHOT");
+    private List<ProjectModule> useExistingRelease(ProjectModule module, String releaseVersion) {
+        final List<ProjectModule> flatListOfAllModules = ConfigUtil.getFlatListOfAllModules(Arrays.asList(module));
+        for (ProjectModule releasedModule : flatListOfAllModules) {
+            releasedModule.setReleasedVersion(releaseVersion);
+        }
+        return flatListOfAllModules;
     }
 
-    public void releaseModuleAndUpdateDependencies(ProjectModule module) throws MojoFailureException {
-        List<ProjectModule> releasedModules = releaseModule(module);
-
-        updateProjectsWithLatestDependencyVersions(releasedModules);
+    private boolean isParentOf(ProjectModule parentModule, ProjectModule module) {
+        final MavenProject parentProject = module.getRelatedMavenProject().getParent();
+        return parentProject != null
+            && createProjectIdentifier(parentProject).equals(createProjectIdentifier(parentModule));
     }
 
-    private List<ProjectModule> releaseModule(ProjectModule module) throws MojoFailureException {
+    private List<ProjectModule> releaseModule(ProjectModule module, File workingCopy, Map<String, String> upstreamVersions)
+            throws MojoFailureException {
         final String path = configUtil.getFullPathFromBase(module, config.getBasedir());
 
-        String input = PromptUtil.promptWithDefault(createProjectIdentifier(module) + " dependency is snapshot. Release?", "y");
-        if (!input.isEmpty() && !input.equalsIgnoreCase("y")) {
-            throw new MojoFailureException("Aborted by user");
-        }
-
-        MavenProject mavenProject = configUtil.getMavenProjectFromPath(path);
-
-        final MavenProject parentProject = mavenProject.getParent();
-        if (parentProject != null) {
-            final String parentVersion = parentProject.getVersion();
-            if (isSnapshot(parentVersion)) {
-                final ProjectModule parentModule = configUtil.getProjectModuleFromMavenProject(parentProject);
-                releaseParentIfNeeded(parentModule, module);
-            }
-        }
-
-        MavenInvoker mavenInvoker = processFactory.createMavenInvoker(path);
-
-        releaseDependencies(mavenProject);
-
         if (!releasedModuleTracker.containsReleasedModule(module.getGroupId(), module.getArtifactId())) {
-            int exitCode = mavenInvoker.execute(
-                    "clean install scm:update release:prepare release:perform --batch-mode -DautoVersionSubmodules=true");
-            final String releasedVersion = getReleasedVersionNumberFromProcess(module, mavenInvoker.getOutput());
+            final String moduleKey = createProjectIdentifier(module);
+            approval.checkApproved(moduleKey);
+            if (!workingCopyPool.isShared() && !journal.isCompleted(moduleKey, ReleaseStep.PREPARE)) {
+                // A worker checkout can be from an earlier run, and misses the POM updates of the previous waves
+                processFactory.createMavenInvoker(workingCopy, "").execute("scm:update");
+            }
+            if (releaseMode.isVerifyBuildNeeded() && journal.begin(moduleKey, ReleaseStep.VERIFY)) {
+                verify(module, workingCopy, path, upstreamVersions);
+                journal.complete(moduleKey, ReleaseStep.VERIFY);
+            }
+            if (journal.begin(moduleKey, ReleaseStep.PREPARE)) {
+                processFactory.createMavenInvoker(workingCopy, path, module.getGroupId(), module.getArtifactId()).execute(
+                        "release:prepare --batch-mode -DautoVersionSubmodules=true"
+                                + versionPlan.getPrepareOptions(module.getGroupId(), module.getArtifactId())
+                                + commitBatch.getPrepareOptions());
+                journal.complete(moduleKey, ReleaseStep.PREPARE, workingCopy.getAbsolutePath());
+            }
+            int exitCode = 0;
+            if (journal.begin(moduleKey, ReleaseStep.PERFORM)) {
+                exitCode = processFactory.createMavenInvoker(workingCopy, path, module.getGroupId(), module.getArtifactId()).execute(
+                        "release:perform --batch-mode" + commitBatch.getPerformOptions()
+                                + releaseMode.getPerformOptions()
+                                + (deployPipeline != null ? deployPipeline.getPerformOptions() : ""));
+                journal.complete(moduleKey, ReleaseStep.PERFORM);
+            }
+            if (deployPipeline != null) {
+                deployPipeline.deploy(moduleKey, module.getGroupId(), module.getArtifactId(),
+                        module.getRelatedMavenProject(), workingCopy, path);
+            }
+            final String releasedVersion = versionPlan.getReleaseVersion(module.getGroupId(), module.getArtifactId());
+            commitBatch.releaseMade();
             List<ProjectModule> flatListOfAllModules = ConfigUtil.getFlatListOfAllModules(Arrays.asList(module));
             for (ProjectModule releasedModule : flatListOfAllModules) {
                 releasedModuleTracker.addReleasedModule(releasedModule.getGroupId(), releasedModule.getArtifactId(), releasedModule.getRelatedMavenProject().getVersion(), releasedVersion);
-                releasedModules.add(releasedModule);
                 releasedModule.setReleasedVersion(releasedVersion);
             }
-            releasedModuleTracker.writeToFile();
             log.info(createProjectIdentifier(module) + " release exited with code " + exitCode);
             return flatListOfAllModules;
         } else {
@@ -158,85 +225,118 @@ public class CascadingDependencyReleaseHelper {
         }
     }
 
-    private void releaseParentIfNeeded(ProjectModule parentModule, ProjectModule module) throws MojoFailureException {
-        final String groupId = parentModule.getGroupId();
-        final String artifactId = parentModule.getArtifactId();
-
-        if (!releasedModuleTracker.containsReleasedModule(groupId, artifactId)) {
-            releaseModule(parentModule);
+    /**
+     * Build and test the module, unless exactly the same content was verified before. The working copy is up to date
+     * here, so the content that is hashed and built is the content that release:prepare tags.
+     */
+    private void verify(ProjectModule module, File workingCopy, String path, Map<String, String> upstreamVersions)
+            throws MojoFailureException {
+        String cacheKey = null;
+        if (verificationCache != null) {
+            final List<MavenProject> projects = new ArrayList<MavenProject>();
+            for (ProjectModule builtModule : ConfigUtil.getFlatListOfAllModules(Arrays.asList(module))) {
+                projects.add(builtModule.getRelatedMavenProject());
+            }
+            cacheKey = verificationCache.computeKey(new File(workingCopy, path), projects, upstreamVersions);
+            if (cacheKey != null && verificationCache.isVerified(cacheKey)) {
+                log.info(createProjectIdentifier(module) + " was verified before with the same content, skipping clean install");
+                return;
+            }
+        }
+        processFactory.createMavenInvoker(workingCopy, path, module.getGroupId(), module.getArtifactId()).execute("clean install");
+        if (cacheKey != null) {
+            verificationCache.markVerified(cacheKey, createProjectIdentifier(module));
         }
-        updateChildren(parentModule, module);
-    }
-
-    private void updateChildren(ProjectModule parentModule, ProjectModule module) throws MojoFailureException {
-        final String path = configUtil.getFullPathFromBase(module, config.getBasedir());
-        MavenInvoker mavenInvoker = processFactory.createMavenInvoker(path);
-
-        int exitCode = mavenInvoker.execute(
-                "versions:update-parent versions:commit scm:checkin -Dmessage=\"Update_" +
-                        parentModule.getArtifactId() + "_to_" + parentModule.getReleasedVersion() + "\""
-        );
-        log.info("Update dependency for " + parentModule.getGroupId() + ":" + parentModule.getArtifactId() + ". Exit code=" + exitCode);
     }
 
-    private String getReleasedVersionNumberFromProcess(ProjectModule module, ImmutableList<String> output) throws MojoFailureException {
-        final String uploadingKeyword = "Uploading";
-        final String regex = ".* " + uploadingKeyword + ": .*\\/" + module.getArtifactId() + "\\/(.*)\\/" + module.getArtifactId() + "\\-(.*)\\.pom";
-        //        final String regex = "\\[INFO\\]\\ \\[INFO\\]\\ Building " + module.getArtifactId() + " (.*)";
-        final Pattern pattern = Pattern.compile(regex);
-        for (String line : output) {
-            // Simple check to make the scanning faster
-            if (!line.contains(uploadingKeyword) || !line.contains(module.getArtifactId())) {
-                continue;
+    private Map<String, String> getUpstreamVersions(ReleaseGraph graph, ProjectModule module) {
+        final Map<String, String> upstreamVersions = new HashMap<String, String>();
+        for (ProjectModule upstream : graph.getUpstreams(module)) {
+            for (ProjectModule upstreamModule : ConfigUtil.getFlatListOfAllModules(Arrays.asList(upstream))) {
+                upstreamVersions.put(createProjectIdentifier(upstreamModule), upstreamModule.getReleasedVersion());
             }
+        }
+        return upstreamVersions;
+    }
 
-            final Matcher matcher = pattern.matcher(line);
-            if (!matcher.matches()) {
-                continue;
+    private void updateChildren(final ProjectModule parentModule, Collection<ProjectModule> downstreams)
+            throws MojoFailureException {
+        final Map<String, PomUpdateFanOut.PomUpdate> updates = new LinkedHashMap<String, PomUpdateFanOut.PomUpdate>();
+        for (final ProjectModule downstream : downstreams) {
+            if (isParentOf(parentModule, downstream)) {
+                updates.put(createProjectIdentifier(downstream), new PomUpdateFanOut.PomUpdate() {
+                    public void run() throws MojoFailureException {
+                        updateChild(parentModule, downstream);
+                    }
+                });
             }
-            final String version = matcher.group(1);
-            log.info("Found version number in release output: [" + version + "]");
-            return version;
         }
+        pomUpdateFanOut.run(updates);
+    }
 
-        throw new MojoFailureException("Error extracting release version from Release Plugin output. Release aborted");
+    private void updateChild(ProjectModule parentModule, ProjectModule module) throws MojoFailureException {
+        final String subject = createProjectIdentifier(module) + "<-" + createProjectIdentifier(parentModule);
+
+        boolean changed;
+        if (journal.begin(subject, ReleaseStep.UPDATE_DEPENDENTS)) {
+            changed = pomVersionRewriter.updateParentVersion(module.getRelatedMavenProject().getFile(), module.getRelatedMavenProject(),
+                    parentModule.getGroupId(), parentModule.getArtifactId(), parentModule.getReleasedVersion());
+            journal.complete(subject, ReleaseStep.UPDATE_DEPENDENTS, String.valueOf(changed));
+        } else {
+            changed = Boolean.parseBoolean(journal.getDetail(subject, ReleaseStep.UPDATE_DEPENDENTS));
+        }
+        if (changed && journal.begin(subject, ReleaseStep.COMMIT)) {
+            commitBatch.add(subject, module.getRelatedMavenProject().getFile(),
+                    "Update_" + parentModule.getArtifactId() + "_to_" + parentModule.getReleasedVersion());
+        }
+        log.info("Update dependency for " + parentModule.getGroupId() + ":" + parentModule.getArtifactId() + ". Changed=" + changed);
     }
 
     /*
-     * Update all child poms.
-     * Commit the child poms.
+     * Update all poms that depend on the released modules, at the same time.
+     * Commit the changed poms.
      */
-    private void updateProjectsWithLatestDependencyVersions(List<ProjectModule> releasedModules) throws MojoFailureException {
+    private void updateProjectsWithLatestDependencyVersions(final List<ProjectModule> releasedModules) throws MojoFailureException {
+        if (releasedModules.isEmpty()) {
+            throw new MojoFailureException("Illegal state: there are no released modules");
+        }
         log.info("Updating dependent modules for: " + releasedModules);
-        for (ProjectModule module : configUtil.getFlatListOfAllModules()) {
-            log.debug("Trying: " + module + "...");
-            final MavenProject dependentMavenProject = configUtil.getMavenProjectFromPath(module.getPath());
-            if (doesProjectContainReleasedModule(dependentMavenProject, releasedModules)) {
-                log.debug("Updating versions...");
-                updateVersionsInProjectForModule(dependentMavenProject, releasedModules);
-            }
-
-            final List<MavenProject> subModules = configUtil.getAllModules(dependentMavenProject);
-            for (MavenProject dependentSubModule : subModules) {
-                if (doesProjectContainReleasedModule(dependentSubModule, releasedModules)) {
-                    updateVersionsInProjectForModule(dependentSubModule, releasedModules);
+        final Map<String, String> releasedVersions = new LinkedHashMap<String, String>();
+        for (ProjectModule releasedModule : releasedModules) {
+            releasedVersions.put(createProjectIdentifier(releasedModule), releasedModule.getReleasedVersion());
+        }
+        final Map<String, PomUpdateFanOut.PomUpdate> updates = new LinkedHashMap<String, PomUpdateFanOut.PomUpdate>();
+        for (final MavenProject dependentMavenProject : configUtil.getDependentProjects(releasedVersions.keySet())) {
+            updates.put(createProjectIdentifier(dependentMavenProject), new PomUpdateFanOut.PomUpdate() {
+                public void run() throws MojoFailureException {
+                    updateVersionsInProjectForModule(dependentMavenProject, releasedModules, releasedVersions);
                 }
-            }
+            });
         }
+        pomUpdateFanOut.run(updates);
     }
 
-    private void updateVersionsInProjectForModule(MavenProject mavenProject, List<ProjectModule> releasedModules) throws MojoFailureException {
-        final ProjectModule module = configUtil.getProjectModuleFromMavenProject(mavenProject);
-        final String path = configUtil.getFullPathFromBase(module, config.getBasedir());
-        final MavenInvoker mavenInvoker = processFactory.createMavenInvoker(path);
-
-        final String includeArg = getIncludedArtifactsForVersionPlugin(releasedModules);
-        final String includePropArg = getIncludedPropertiesForVersionPlugin(module, releasedModules);
+    private void updateVersionsInProjectForModule(MavenProject mavenProject, List<ProjectModule> releasedModules,
+                                                  Map<String, String> releasedVersions) throws MojoFailureException {
+        final String subject = createProjectIdentifier(mavenProject) + "<-" + createProjectIdentifier(releasedModules.get(0));
 
-        final String commitMsg = createCommitMessage(releasedModules);
-        int exitCode = mavenInvoker.execute("versions:update-properties versions:use-latest-versions versions:commit " + //
-                "scm:checkin -Dmessage=\"" + commitMsg + "\" " + includeArg + " " + includePropArg);
-        log.info("Update dependency for " + mavenProject.getGroupId() + ":" + mavenProject.getArtifactId() + ". Exit code=" + exitCode);
+        boolean changed;
+        if (journal.begin(subject, ReleaseStep.UPDATE_DEPENDENTS)) {
+            final Map<String, String> previousVersions = new HashMap<String, String>();
+            for (ProjectModule releasedModule : releasedModules) {
+                previousVersions.put(createProjectIdentifier(releasedModule),
+                        releasedModule.getRelatedMavenProject().getVersion());
+            }
+            changed = pomVersionRewriter.updateDependencyVersions(mavenProject.getFile(), mavenProject, releasedVersions,
+                    previousVersions, configUtil.getVersionProperties(mavenProject, releasedVersions));
+            journal.complete(subject, ReleaseStep.UPDATE_DEPENDENTS, String.valueOf(changed));
+        } else {
+            changed = Boolean.parseBoolean(journal.getDetail(subject, ReleaseStep.UPDATE_DEPENDENTS));
+        }
+        if (changed && journal.begin(subject, ReleaseStep.COMMIT)) {
+            commitBatch.add(subject, mavenProject.getFile(), createCommitMessage(releasedModules));
+        }
+        log.info("Update dependency for " + mavenProject.getGroupId() + ":" + mavenProject.getArtifactId() + ". Changed=" + changed);
     }
 
     private String createCommitMessage(final List<ProjectModule> releasedModules) {
@@ -254,72 +354,4 @@ public class CascadingDependencyReleaseHelper {
         }
         return commitMsg.toString();
     }
-
-    private String getIncludedArtifactsForVersionPlugin(List<ProjectModule> releasedModules) throws MojoFailureException {
-        final StringBuilder sb = new StringBuilder();
-        String sep = "";
-        if (releasedModules.isEmpty()) {
-            throw new MojoFailureException("Illegal state: there are no released modules");
-        } else {
-            sb.append("-Dincludes=");
-            for (ProjectModule releasedModule : releasedModules) {
-                sb.append(sep);
-                sb.append(releasedModule.getGroupId());
-                sb.append(":");
-                sb.append(releasedModule.getArtifactId());
-                sep = ",";
-            }
-        }
-        return sb.toString();
-    }
-
-    private String getIncludedPropertiesForVersionPlugin(final ProjectModule module, final List<ProjectModule> releasedModules) throws MojoFailureException {
-        String sep = "";
-        if (releasedModules.isEmpty()) {
-            throw new MojoFailureException("Illegal state: there are no released modules");
-        } else {
-            final StringBuilder sb = new StringBuilder();
-            sb.append("-DincludeProperties=");
-            final List<Dependency> dependencies = module.getRelatedMavenProject().getOriginalModel().getDependencies();
-            for (ProjectModule releasedModule : releasedModules) {
-                sb.append(sep);
-                final Dependency dependency = findDependency(dependencies, releasedModule);
-
-                if (dependency != null) {
-                    final String version = dependency.getVersion();
-                    if (version.startsWith("${") && version.endsWith("}")) {
-                        final String prop = version.substring(2, version.length() - 1);
-                        sb.append(prop);
-                        sep = ",";
-                    }
-                }
-            }
-            return sb.toString();
-        }
-    }
-
-    private boolean doesProjectContainReleasedModule(MavenProject mavenProject, Iterable<ProjectModule> releasedModules) {
-        for (ProjectModule releasedModule : releasedModules) {
-            final Dependency dependency = findDependency(mavenProject.getDependencies(), releasedModule);
-            if (dependency != null) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    private Dependency findDependency(final List<Dependency> dependencies, final ProjectModule releasedModule) {
-        final String releasedModuleKey = createProjectIdentifier(releasedModule);
-        for (Dependency dependency : dependencies) {
-            final String dependencyKey = createProjectIdentifier(dependency);
-            log.debug(releasedModuleKey + ".equals(" + dependencyKey + ")??? " + releasedModuleKey.equals(dependencyKey));
-            if (releasedModuleKey.equals(dependencyKey)) {
-                log.debug("Found dependency to module [" + releasedModuleKey + "]: " + dependencyKey);
-                return dependency;
-            }
-        }
-
-        return null;
-    }
 }
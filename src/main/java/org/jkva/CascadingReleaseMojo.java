@@ -2,12 +2,12 @@ package org.jkva;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.maven.execution.MavenSession;
-import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.Maven;
+import org.apache.maven.model.Scm;
 import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.LegacySupport;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -15,80 +15,309 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
-import org.apache.maven.settings.Settings;
 import org.codehaus.plexus.util.StringUtils;
 
-import com.google.common.collect.ImmutableList;
 
 /**
  * @author Jan-Kees van Andel - @jankeesvanandel
  */
 @Mojo(name = "cascading-release", requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME, inheritByDefault = false, aggregator = true)
-public class CascadingReleaseMojo extends AbstractMojo {
-
-    @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
-    private List<MavenProject> reactorProjects;
-
-    @Parameter(property = "basedir", required = true, defaultValue = "${basedir}")
-    private File basedir;
+public class CascadingReleaseMojo extends AbstractCascadingReleaseMojo {
 
     @Parameter(property = "outputFile", defaultValue = "${project.build.directory}/release-summary.txt", required = true)
     private File outputFile;
 
-    @Parameter(property = "parentPath")
-    private String parentPath;
+    /**
+     * Machine readable report of all releases, one JSON object per line. Every release is appended as soon as it is
+     * made.
+     */
+    @Parameter(property = "reportFile", defaultValue = "${user.home}/.cascading-release/${project.artifactId}/release-report.jsonl", required = true)
+    private File reportFile;
 
-    @Parameter(property = "distPath", defaultValue = "")
-    private String distPath;
+    /**
+     * Every step of the release is recorded in this journal, so a failed release can be resumed.
+     */
+    @Parameter(property = "journalFile", defaultValue = "${user.home}/.cascading-release/${project.artifactId}/release-journal.txt", required = true)
+    private File journalFile;
 
-    @Component
-    private MavenProject project;
+    /**
+     * Resume a failed release. Steps that were completed according to the journal are skipped.
+     */
+    @Parameter(property = "resume", defaultValue = "false")
+    private boolean resume;
 
-    @Component
-    private MavenSession session;
+    /**
+     * How Maven builds are executed: "fork" starts a new Maven process (M2_BIN) for every build, "in-process" runs them
+     * inside the current JVM. In-process builds run one at a time, so that backend requires a single worker and no
+     * pipelined deploys.
+     */
+    @Parameter(property = "executionBackend", defaultValue = "fork")
+    private String executionBackend;
+
+    /**
+     * The number of minutes a forked build may take, before it is killed. 0 means no timeout.
+     */
+    @Parameter(property = "forkTimeout", defaultValue = "0")
+    private long forkTimeout;
+
+    /**
+     * Timeouts in minutes for specific goals, overriding the forkTimeout, like
+     * <code>clean=5,release:perform=120</code>. When a fork runs multiple goals, the longest timeout is used.
+     */
+    @Parameter(property = "goalTimeouts")
+    private String goalTimeouts;
+
+    /**
+     * The {@link VersionPolicy} that decides the release and next development versions: "default", or the class name
+     * of an implementation on the plugin classpath.
+     */
+    @Parameter(property = "versionPolicy", defaultValue = "default")
+    private String versionPolicy;
+
+    /**
+     * Don't release modules that didn't change since their last release (apart from Release Plugin commits), if
+     * their dependencies didn't change either. Dependents are updated to the last release instead. Git only.
+     */
+    @Parameter(property = "skipUnchanged", defaultValue = "false")
+    private boolean skipUnchanged;
+
+    /**
+     * The tag name format of the Release Plugin, used for finding the last release of a module.
+     */
+    @Parameter(property = "tagNameFormat", defaultValue = "@{project.artifactId}-@{project.version}")
+    private String tagNameFormat;
+
+    /**
+     * Directory of the verification cache, which remembers the module contents that were built and tested
+     * successfully. The clean install before a release is skipped for content that was verified before.
+     */
+    @Parameter(property = "verificationCacheDirectory", defaultValue = "${user.home}/.cascading-release/verification-cache")
+    private File verificationCacheDirectory;
+
+    /**
+     * The maximum number of entries in the verification cache. 0 disables the cache.
+     */
+    @Parameter(property = "verificationCacheSize", defaultValue = "1000")
+    private int verificationCacheSize;
+
+    /**
+     * The maximum number of dependent POMs that are updated at the same time after a release.
+     */
+    @Parameter(property = "updateThreads", defaultValue = "4")
+    private int updateThreads;
+
+    /**
+     * The metrics of the run: durations of forks per goal, SCM operations, prompts, planning and release steps.
+     */
+    @Parameter(property = "metricsFile", defaultValue = "${user.home}/.cascading-release/${project.artifactId}/release-metrics.json", required = true)
+    private File metricsFile;
+
+    /**
+     * The same metrics in the Prometheus text format, for the textfile collector of the node exporter.
+     */
+    @Parameter(property = "prometheusFile", defaultValue = "${user.home}/.cascading-release/${project.artifactId}/release-metrics.prom", required = true)
+    private File prometheusFile;
+
+    /**
+     * Give every forked build its share of the machine: -T with the cores divided by the workers, a share of half of
+     * the physical memory as heap and more artifact transfer threads. The builds that the Release Plugin forks get
+     * the heap and transfer threads through MAVEN_OPTS, so the memory is shared by two JVMs per worker and one per
+     * deploy thread.
+     */
+    @Parameter(property = "tuneForks", defaultValue = "true")
+    private boolean tuneForks;
+
+    /**
+     * Let release:perform only install the tagged artifacts, and deploy them in the background. The downstream
+     * modules are built while the upstream artifacts are uploading; the release only succeeds when all deploys did.
+     */
+    @Parameter(property = "pipelinedDeploy", defaultValue = "false")
+    private boolean pipelinedDeploy;
+
+    /**
+     * The maximum number of modules that are deployed at the same time with pipelinedDeploy.
+     */
+    @Parameter(property = "deployThreads", defaultValue = "2")
+    private int deployThreads;
+
+    /**
+     * How the workspace is updated and checked for local changes before the release: "jgit" in-process for Git,
+     * "fork" with the Maven SCM Plugin for any SCM, or "auto" for jgit when the project is in Git and fork otherwise.
+     */
+    @Parameter(property = "scmProvider", defaultValue = "auto")
+    private String scmProvider;
+
+    /**
+     * Execution profiles for specific modules, overriding the tuned defaults, see {@link ExecutionProfile}.
+     */
+    @Parameter
+    private List<ExecutionProfile> executionProfiles;
+
+    @Parameter(property = "workersDirectory", defaultValue = "${java.io.tmpdir}/cascading-release-workers/${project.artifactId}")
+    private File workersDirectory;
 
     @Component
     private BuildPluginManager pluginManager;
 
-    @Parameter( defaultValue = "${settings}", readonly = true, required = true )
-    private Settings settings;
+    @Component
+    private Maven maven;
+
+    @Component
+    private LegacySupport legacySupport;
 
     private ProcessFactory processFactory;
-    private Config config;
-    private ConfigUtil configUtil;
     private ReleasedModuleTracker releasedModuleTracker;
+    private ReleaseJournal journal;
 
     public void execute() throws MojoExecutionException, MojoFailureException {
-        PromptUtil.settings = settings;
-        ConfigFileReader configFileReader = new ConfigFileReader(getLog(), project);
-        config = configFileReader.readConfigFile(parentPath, distPath, reactorProjects);
-        config.setBasedir(basedir);
-        String s = configFileReader.outputConfig(config);
+        readConfiguration();
 
-        processFactory = new ProcessFactory(getLog(), config.getProjectBase());
-        configUtil = new ConfigUtil(config, getLog(), session);
-        releasedModuleTracker = new ReleasedModuleTracker(outputFile);
+        processFactory = createProcessFactory();
+        releasedModuleTracker = new ReleasedModuleTracker(outputFile, reportFile);
+        journal = ReleaseJournal.open(getLog(), journalFile, resume, TimingHistory.open(getLog(), timingHistoryFile), metrics);
 
+        DeployPipeline deployPipeline = null;
+        boolean released = false;
         try {
             validateSystemSettings();
             validateCurrentWorkspace();
 
-            ParentReleaseHelper parentReleaseHelper = new ParentReleaseHelper(processFactory, config, session, project, getLog(), configUtil, releasedModuleTracker);
-            parentReleaseHelper.releaseParentIfNeeded();
-
-            CascadingDependencyReleaseHelper cascadingDependencyReleaseHelper = new CascadingDependencyReleaseHelper(processFactory, config, getLog(), configUtil, releasedModuleTracker);
-
             MavenProject releasableProject = configUtil.getMavenProjectFromPath(config.getDistPath());
-            cascadingDependencyReleaseHelper.releaseDependencies(releasableProject);
             final ProjectModule distModule = configUtil.getProjectModuleFromMavenProject(releasableProject);
-            cascadingDependencyReleaseHelper.releaseModuleAndUpdateDependencies(distModule);
+            final long startTime = System.currentTimeMillis();
+            final ReleaseGraph releaseGraph = new ReleaseGraphBuilder(config, getLog(), configUtil).createReleaseGraph(distModule);
+            metrics.recordPhase("releaseGraph", System.currentTimeMillis() - startTime);
+            // All decisions are made before anything is released, the release never waits for the console
+            ReleaseApproval approval = createReleaseApproval(releaseGraph);
+            approval.approve(approvalFile);
 
-            releasedModuleTracker.writeToFile();
+            WorkingCopyPool workingCopyPool = WorkingCopyPool.create(getLog(), processFactory, config.getProjectBase(), workersDirectory, workers);
+            // With Git, only the current working copy pushes, also the releases that the workers made
+            ScmCommitBatch commitBatch = new ScmCommitBatch(getLog(), processFactory, config.getProjectBase(), journal, isGitProject());
+            VersionPlan versionPlan = new VersionPlan(getLog(), createVersionPolicy(), journal);
+            VerificationCache verificationCache = verificationCacheSize > 0 ? new VerificationCache(getLog(), verificationCacheDirectory, verificationCacheSize) : null;
+            PomUpdateFanOut pomUpdateFanOut = new PomUpdateFanOut(getLog(), updateThreads);
+            if (pipelinedDeploy) {
+                deployPipeline = new DeployPipeline(getLog(), processFactory, journal, new File(workersDirectory, "deploys"), deployThreads);
+            }
+
+            ParentReleaseHelper parentReleaseHelper = new ParentReleaseHelper(processFactory, config, session, project, getLog(), configUtil, releasedModuleTracker, journal, commitBatch, versionPlan, verificationCache, getReleaseMode(), pomUpdateFanOut, approval, deployPipeline);
+            parentReleaseHelper.releaseParentIfNeeded();
+
+            ChangeDetector changeDetector = skipUnchanged ? ChangeDetector.open(getLog(), config.getProjectBase(), tagNameFormat) : null;
+            CascadingDependencyReleaseHelper cascadingDependencyReleaseHelper = new CascadingDependencyReleaseHelper(processFactory, config, getLog(), configUtil, releasedModuleTracker, workingCopyPool, journal, commitBatch, versionPlan, changeDetector, verificationCache, getReleaseMode(), pomUpdateFanOut, approval, deployPipeline);
+
+            try {
+                cascadingDependencyReleaseHelper.release(releaseGraph);
+            } finally {
+                if (changeDetector != null) {
+                    changeDetector.close();
+                }
+            }
+            if (deployPipeline != null) {
+                deployPipeline.awaitAll();
+            }
+            released = true;
         } catch (IOException e) {
             throw new MojoFailureException("IO error", e);
+        } finally {
+            if (deployPipeline != null) {
+                deployPipeline.close();
+            }
+            try {
+                writeReleaseSummary(released);
+            } finally {
+                writeMetrics();
+            }
         }
     }
 
+    /**
+     * The summary is written after a failed release too, it lists the modules that were released before the failure.
+     * Only after a successful release a failure to write it fails the build.
+     */
+    private void writeReleaseSummary(boolean released) throws MojoFailureException {
+        try {
+            releasedModuleTracker.writeToFile();
+        } catch (MojoFailureException e) {
+            if (released) {
+                throw e;
+            }
+            getLog().warn(e.getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * The metrics are written after a failed release too, without hiding the reason it failed.
+     */
+    private void writeMetrics() {
+        try {
+            metrics.write(getLog(), metricsFile, prometheusFile);
+        } catch (MojoFailureException e) {
+            getLog().warn(e.getMessage(), e.getCause());
+        }
+    }
+
+    private ProcessFactory createProcessFactory() throws MojoFailureException {
+        // One fork per worker and per deploy thread, and one for the git commands of the release itself
+        final int concurrentForks = Math.max(1, workers) + (pipelinedDeploy ? deployThreads : 0) + 1;
+        final ProcessSupervisor supervisor = new ProcessSupervisor(getLog(), concurrentForks, forkTimeout,
+                ProcessSupervisor.parseGoalTimeouts(goalTimeouts));
+        if ("in-process".equals(executionBackend)) {
+            if (maven != null && legacySupport != null) {
+                if (workers > 1 || pipelinedDeploy) {
+                    throw new MojoFailureException("In-process Maven builds run one at a time, use executionBackend "
+                            + "fork for more than one worker or pipelinedDeploy");
+                }
+                getLog().info("Running Maven builds in-process");
+                return new ProcessFactory(getLog(), config.getProjectBase(), supervisor, metrics, null, maven, legacySupport, session);
+            }
+            getLog().warn("In-process Maven execution is not available, falling back to forking Maven");
+        } else if (!"fork".equals(executionBackend)) {
+            throw new MojoFailureException("Unknown executionBackend: " + executionBackend + ". Use fork or in-process");
+        }
+        return new ProcessFactory(getLog(), config.getProjectBase(), supervisor, metrics, createExecutionProfiles());
+    }
+
+    private ExecutionProfiles createExecutionProfiles() {
+        if (!tuneForks && (executionProfiles == null || executionProfiles.isEmpty())) {
+            return null;
+        }
+        final ExecutionProfile defaultProfile = tuneForks
+                ? ExecutionProfile.createDefault(workers, pipelinedDeploy ? deployThreads : 0) : new ExecutionProfile();
+        final ExecutionProfiles profiles = new ExecutionProfiles(defaultProfile, executionProfiles);
+        getLog().info("Forked builds run with " + defaultProfile);
+        for (ExecutionProfile override : profiles.getOverrides()) {
+            getLog().info("Forked builds of " + defaultProfile.overrideWith(override));
+        }
+        return profiles;
+    }
+
+    private VersionPolicy createVersionPolicy() throws MojoFailureException {
+        if ("default".equals(versionPolicy)) {
+            return new DefaultVersionPolicy();
+        }
+        try {
+            return Class.forName(versionPolicy, true, getClass().getClassLoader()).asSubclass(VersionPolicy.class)
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new MojoFailureException("Can't create versionPolicy " + versionPolicy
+                    + ", it must be a VersionPolicy with a public no-argument constructor", e);
+        } catch (ClassCastException e) {
+            throw new MojoFailureException("Can't create versionPolicy " + versionPolicy
+                    + ", it must be a VersionPolicy with a public no-argument constructor", e);
+        }
+    }
+
+    private boolean isGitProject() {
+        final Scm scm = project.getScm();
+        if (scm == null) {
+            return false;
+        }
+        final String connection = scm.getDeveloperConnection() != null ? scm.getDeveloperConnection() : scm.getConnection();
+        return connection != null && connection.startsWith("scm:git:");
+    }
+
     private void validateSystemSettings() throws MojoFailureException {
         validateEnvVars("M2_BIN", "Maven");
     }
@@ -105,50 +334,44 @@ public class CascadingReleaseMojo extends AbstractMojo {
         }
     }
 
+    private ScmProvider createScmProvider() throws MojoFailureException {
+        if ("jgit".equals(scmProvider) || ("auto".equals(scmProvider) && isGitProject())) {
+            final GitScmProvider gitScmProvider = GitScmProvider.open(getLog(), processFactory, metrics, config.getProjectBase());
+            if (gitScmProvider != null) {
+                return gitScmProvider;
+            }
+            if ("jgit".equals(scmProvider)) {
+                throw new MojoFailureException("No Git repository found for " + config.getProjectBase());
+            }
+            getLog().warn("No Git repository found for " + config.getProjectBase() + ", using the Maven SCM Plugin");
+        } else if (!"auto".equals(scmProvider) && !"fork".equals(scmProvider)) {
+            throw new MojoFailureException("Unknown scmProvider: " + scmProvider + ". Use auto, jgit or fork");
+        }
+        return new ForkingScmProvider(processFactory);
+    }
+
     /**
      * Validate & update current workspace.
-     * svn check local modifications > error
-     * svn up
+     * check local modifications > error
+     * update
      */
     private void validateCurrentWorkspace() throws MojoFailureException {
-        final MavenInvoker scmUpdateInvoker = processFactory.createMavenInvoker("");
-        scmUpdateInvoker.execute("scm:update");
-
-        final MavenInvoker scmStatusInvoker = processFactory.createMavenInvoker("");
-        scmStatusInvoker.execute("scm:status");
-        final ImmutableList<String> output = scmStatusInvoker.getOutput();
-        final List<String> statusLines = extractScmStatusOutput(output);
-        for (String statusLine : statusLines) {
-            getLog().info("Local changes: " + statusLine);
-        }
-        if (!statusLines.isEmpty()) {
-            throw new MojoFailureException("You have local changes. Release aborted");
-        }
-    }
-
-    private List<String> extractScmStatusOutput(ImmutableList<String> output) {
-        final List<String> statusLines = new ArrayList<String>();
-        boolean started = false;
-        for (String line : output) {
-            getLog().debug("line: " + line);
-            if (started) {
-                if (line.startsWith("[INFO] --------------------------")) {
-                    break;
-                }
-                if (isInterestingStatusLine(line)) {
-                    statusLines.add(line);
-                }
+        final ScmProvider scm = createScmProvider();
+        try {
+            scm.update();
+            final List<ScmProvider.LocalChange> localChanges = scm.getLocalChanges();
+            for (ScmProvider.LocalChange localChange : localChanges) {
+                getLog().info("Local changes: " + localChange);
             }
-            if (line.startsWith("[INFO] Working directory: ")) {
-                started = true;
+            if (!localChanges.isEmpty()) {
+                if (resume) {
+                    getLog().warn("You have local changes, probably left by the failed release. Continuing with resume");
+                } else {
+                    throw new MojoFailureException("You have " + localChanges.size() + " local changes. Release aborted");
+                }
             }
+        } finally {
+            scm.close();
         }
-        return statusLines;
     }
-
-    private boolean isInterestingStatusLine(final String line) {
-        return !line.contains("[INFO] Executing: ")
-            && !line.contains("[INFO] Working directory: ");
-    }
-
 }
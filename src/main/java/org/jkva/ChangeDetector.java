@@ -0,0 +1,146 @@
+package org.jkva;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.artifact.versioning.ComparableVersion;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Finds out if a module changed since its last release, by looking at the Git history of the module directory since
+ * the last release tag. The history is read in-process, with JGit. Commits of the Release Plugin itself (the release
+ * and the move to the next development version) are not changes.
+ */
+public class ChangeDetector {
+
+    static final String RELEASE_PLUGIN_COMMIT = "[maven-release-plugin]";
+
+    private final Log log;
+    private final Repository repository;
+    private final String tagNameFormat;
+
+    private ChangeDetector(Log log, Repository repository, String tagNameFormat) {
+        this.log = log;
+        this.repository = repository;
+        this.tagNameFormat = tagNameFormat;
+    }
+
+    /**
+     * @param tagNameFormat the tag name format of the Release Plugin, like @{project.artifactId}-@{project.version}
+     */
+    public static ChangeDetector open(Log log, File projectBase, String tagNameFormat) throws MojoFailureException {
+        try {
+            final Repository repository = new FileRepositoryBuilder().findGitDir(projectBase).setMustExist(true).build();
+            return new ChangeDetector(log, repository, tagNameFormat);
+        } catch (IOException e) {
+            throw new MojoFailureException("Can't open the Git repository of " + projectBase
+                    + ". Changes can only be detected in Git projects", e);
+        } catch (IllegalArgumentException e) {
+            throw new MojoFailureException("No Git repository found for " + projectBase
+                    + ". Changes can only be detected in Git projects", e);
+        }
+    }
+
+    /**
+     * @return the version of the last release of the module, when nothing changed in the module directory since that
+     * release. Null when the module changed or was never released
+     */
+    public String getUnchangedReleaseVersion(ProjectModule module) throws MojoFailureException {
+        final String moduleKey = ConfigUtil.createProjectIdentifier(module);
+        try {
+            final Ref tag = findLastReleaseTag(module);
+            if (tag == null) {
+                log.info(moduleKey + " has no release tag, it is released");
+                return null;
+            }
+            final String path = getPathInRepository(module.getRelatedMavenProject().getBasedir());
+            final RevCommit change = findChangeSince(tag, path);
+            if (change != null) {
+                log.info(moduleKey + " changed since " + tag.getName() + " (" + change.abbreviate(8).name() + ": "
+                        + change.getShortMessage() + "), it is released");
+                return null;
+            }
+            return getVersion(module, Repository.shortenRefName(tag.getName()));
+        } catch (IOException e) {
+            throw new MojoFailureException("Error reading the Git history of " + moduleKey, e);
+        }
+    }
+
+    private Ref findLastReleaseTag(ProjectModule module) throws IOException {
+        Ref lastTag = null;
+        ComparableVersion lastVersion = null;
+        for (Ref tag : repository.getRefDatabase().getRefsByPrefix(Constants.R_TAGS)) {
+            final String version = getVersion(module, Repository.shortenRefName(tag.getName()));
+            if (version != null && !version.endsWith(DefaultVersionPolicy.SNAPSHOT)) {
+                final ComparableVersion comparableVersion = new ComparableVersion(version);
+                if (lastVersion == null || comparableVersion.compareTo(lastVersion) > 0) {
+                    lastTag = tag;
+                    lastVersion = comparableVersion;
+                }
+            }
+        }
+        return lastTag;
+    }
+
+    /**
+     * @return the version in the tag name, or null when the tag is not a release tag of the module
+     */
+    private String getVersion(ProjectModule module, String tagName) {
+        final String regex = Pattern.quote(tagNameFormat)
+                .replace("@{project.artifactId}", "\\E" + Pattern.quote(module.getArtifactId()) + "\\Q")
+                .replace("@{project.groupId}", "\\E" + Pattern.quote(module.getGroupId()) + "\\Q")
+                .replace("@{project.version}", "\\E(.+)\\Q");
+        final Matcher matcher = Pattern.compile(regex).matcher(tagName);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    /**
+     * @return the first commit after the tag that changes the path and isn't a Release Plugin commit, or null
+     */
+    private RevCommit findChangeSince(Ref tag, String path) throws IOException {
+        final RevWalk walk = new RevWalk(repository);
+        try {
+            walk.markStart(walk.parseCommit(repository.resolve(Constants.HEAD)));
+            walk.markUninteresting(walk.parseCommit(tag.getObjectId()));
+            if (!path.isEmpty()) {
+                walk.setTreeFilter(AndTreeFilter.create(PathFilter.create(path), TreeFilter.ANY_DIFF));
+            }
+            for (RevCommit commit : walk) {
+                if (!commit.getFullMessage().startsWith(RELEASE_PLUGIN_COMMIT)) {
+                    return commit;
+                }
+            }
+            return null;
+        } finally {
+            walk.dispose();
+        }
+    }
+
+    private String getPathInRepository(File directory) throws IOException {
+        final String workTree = repository.getWorkTree().getCanonicalPath().replace('\\', '/');
+        final String path = directory.getCanonicalPath().replace('\\', '/');
+        if (path.equals(workTree)) {
+            return "";
+        }
+        if (!path.startsWith(workTree + "/")) {
+            throw new IOException(directory + " is not in the Git repository " + workTree);
+        }
+        return path.substring(workTree.length() + 1);
+    }
+
+    public void close() {
+        repository.close();
+    }
+}
@@ -1,16 +1,25 @@
 package org.jkva;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 
+/**
+ * Builds the {@link Config} tree of all modules in the reactor. The reactor projects are indexed by directory and
+ * the modules by groupId:artifactId first, so building the tree takes time linear in the number of modules.
+ */
 public class ConfigFileReader {
 
     private final Log log;
     private final MavenProject project;
+    private final CanonicalPaths canonicalPaths = new CanonicalPaths();
+    private Map<String, MavenProject> projectsByDirectory;
 
     public ConfigFileReader(Log log, MavenProject project) {
         this.log = log;
@@ -25,9 +34,10 @@ public class ConfigFileReader {
             config.setDistPath(distPath);
             config.setProjectBase(project.getBasedir().getCanonicalFile());
 
-            MavenProject moduleProject = findMavenProjectForModule(project, reactorProjects, "");
+            projectsByDirectory = indexProjectsByDirectory(reactorProjects);
+            MavenProject moduleProject = findMavenProjectForModule(project, "");
             config.getModules().add(createProjectModule(project, moduleProject));
-            setModules(project, reactorProjects, config.getModules());
+            setModules(project, config.getModules());
             setModuleParents(config);
             setReleasableModuleParents(config);
             updateAutoDeterminedFields(config);
@@ -37,15 +47,14 @@ public class ConfigFileReader {
         return config;
     }
 
-    private void setModules(MavenProject mavenProject, List<MavenProject> reactorProjects, List<ProjectModule> modules)
-            throws MojoFailureException {
+    private void setModules(MavenProject mavenProject, List<ProjectModule> modules) throws MojoFailureException {
         List<String> moduleNames = mavenProject.getModules();
         for (String moduleName : moduleNames) {
-            MavenProject moduleProject = findMavenProjectForModule(mavenProject, reactorProjects, moduleName);
+            MavenProject moduleProject = findMavenProjectForModule(mavenProject, moduleName);
             ProjectModule projectModule = createProjectModule(mavenProject, moduleProject);
 
             modules.add(projectModule);
-            setModules(moduleProject, reactorProjects, projectModule.getModules());
+            setModules(moduleProject, projectModule.getModules());
         }
     }
 
@@ -55,15 +64,8 @@ public class ConfigFileReader {
         projectModule.setArtifactId(moduleProject.getArtifactId());
         projectModule.setRelatedMavenProject(moduleProject);
 
-        String modulePath;
-        String projectPath;
-        try {
-            modulePath = moduleProject.getFile().getParentFile().getCanonicalPath();
-            projectPath = mavenProject.getFile().getParentFile().getCanonicalPath();
-        } catch (IOException e) {
-            throw new MojoFailureException("", e);
-        }
-//        log.info("asdasdas " + modulePath + " 123 " + projectPath);
+        String modulePath = canonicalPaths.getCanonicalPath(moduleProject.getFile().getParentFile());
+        String projectPath = canonicalPaths.getCanonicalPath(mavenProject.getFile().getParentFile());
         String relativeModulePath = modulePath.replace(projectPath, "").replace("\\", "/");
         if (!relativeModulePath.isEmpty()) {
             relativeModulePath = relativeModulePath.substring(1);
@@ -81,10 +83,10 @@ public class ConfigFileReader {
     }
 
     // If this maven project is part of a larger multi-module build, it should never be released separately,
-    // but always as part of the full multi-module build.
+    // but always as part of the full multi-module build. The top-level projects have no parent in the reactor.
     private boolean determineReleasableModuleParent(final ProjectModule module) throws MojoFailureException {
         final ProjectModule parentModule = module.getParent();
-        if (parentModule.getModules().contains(module)) {
+        if (parentModule != null && parentModule.getModules().contains(module)) {
             return false;
         } else {
             return true;
@@ -93,6 +95,7 @@ public class ConfigFileReader {
 
     private void setModuleParents(Config config) throws MojoFailureException {
         List<ProjectModule> allModules = ConfigUtil.getFlatListOfAllModules(config.getModules());
+        Map<String, ProjectModule> modulesByIdentifier = indexModulesByIdentifier(allModules);
         for (ProjectModule module : allModules) {
             MavenProject relatedMavenProject = module.getRelatedMavenProject();
             if (relatedMavenProject == null) {
@@ -100,41 +103,56 @@ public class ConfigFileReader {
             }
             MavenProject parent = relatedMavenProject.getParent();
             if (parent != null) {
-                String groupId = parent.getGroupId();
-                String artifactId = parent.getArtifactId();
-                ProjectModule parentModule = findProjectModule(groupId, artifactId, allModules);
+                ProjectModule parentModule = modulesByIdentifier.get(ConfigUtil.createProjectIdentifier(parent));
                 module.setParent(parentModule);
             }
         }
     }
 
-    private ProjectModule findProjectModule(String groupId, String artifactId, List<ProjectModule> allModules)
-            throws MojoFailureException {
+    /**
+     * When there are duplicates, the first one wins, just like the linear scan used to do.
+     */
+    private Map<String, ProjectModule> indexModulesByIdentifier(List<ProjectModule> allModules) {
+        Map<String, ProjectModule> modulesByIdentifier = new HashMap<String, ProjectModule>();
         for (ProjectModule module : allModules) {
-            if (module.getGroupId().equals(groupId) && module.getArtifactId().equals(artifactId)) {
-                return module;
+            String key = ConfigUtil.createProjectIdentifier(module);
+            if (!modulesByIdentifier.containsKey(key)) {
+                modulesByIdentifier.put(key, module);
             }
         }
-        return null;
+        return modulesByIdentifier;
     }
 
-    private MavenProject findMavenProjectForModule(MavenProject mavenProject, List<MavenProject> reactorProjects,
-                                                   String moduleName) throws MojoFailureException {
+    private Map<String, MavenProject> indexProjectsByDirectory(List<MavenProject> reactorProjects) {
+        Map<String, MavenProject> ret = new HashMap<String, MavenProject>();
+        for (MavenProject reactorProject : reactorProjects) {
+            String key = createDirectoryKey(reactorProject.getFile().getParentFile().getPath());
+            if (!ret.containsKey(key)) {
+                ret.put(key, reactorProject);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Directories are matched case insensitive, with either separator.
+     */
+    private String createDirectoryKey(String path) {
+        return path.replace("\\", "/").toLowerCase(Locale.ENGLISH);
+    }
+
+    private MavenProject findMavenProjectForModule(MavenProject mavenProject, String moduleName)
+            throws MojoFailureException {
         String qModuleName = mavenProject.getFile().getParentFile().getPath() + "\\" + moduleName;
         qModuleName = qModuleName.replace("\\", "/");
         if (qModuleName.endsWith("/")) {
             qModuleName = qModuleName.substring(0, qModuleName.length() - 1);
         }
-        for (MavenProject reactorProject : reactorProjects) {
-            String reactorPath = reactorProject.getFile().getParentFile().getPath();
-            reactorPath = reactorPath.replace("\\", "/");
-//            log.info("reactorProject: " + reactorPath + " ||| " + qModuleName);
-            if (reactorPath.equalsIgnoreCase(qModuleName)) {
-                // log.info("qmodulename: " + qModuleName + " resolved to: " + reactorPath);
-                return reactorProject;
-            }
+        MavenProject reactorProject = projectsByDirectory.get(createDirectoryKey(qModuleName));
+        if (reactorProject == null) {
+            throw new MojoFailureException("Cannot find module MavenProject for module name: " + moduleName);
         }
-        throw new MojoFailureException("Cannot find module MavenProject for module name: " + moduleName);
+        return reactorProject;
     }
 
     private void updateAutoDeterminedFields(Config config) {
@@ -2,7 +2,12 @@ package org.jkva;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Dependency;
@@ -17,11 +22,17 @@ public class ConfigUtil {
     private Config config;
     private Log log;
     private MavenSession session;
+    private final ModuleRegistry moduleRegistry;
+    private final ReactorTraversalCache traversalCache;
+    private final ReverseDependencyIndex reverseDependencyIndex;
 
-    public ConfigUtil(Config config, Log log, MavenSession session) {
+    public ConfigUtil(Config config, Log log, MavenSession session) throws MojoFailureException {
         this.config = config;
         this.log = log;
         this.session = session;
+        this.moduleRegistry = ModuleRegistry.create(config, session.getProjects());
+        this.traversalCache = new ReactorTraversalCache(moduleRegistry);
+        this.reverseDependencyIndex = new ReverseDependencyIndex(session.getProjects());
     }
 
     public static String createProjectIdentifier(MavenProject mavenProject) {
@@ -36,52 +47,69 @@ public class ConfigUtil {
         return createProjectIdentifier(dependency.getGroupId(), dependency.getArtifactId());
     }
 
-    private static String createProjectIdentifier(String groupId, String artifactId) {
+    public static String createProjectIdentifier(String groupId, String artifactId) {
         return groupId + ":" + artifactId;
     }
 
     public List<MavenProject> getAllModules(MavenProject project) throws MojoFailureException {
-        List<MavenProject> ret = new ArrayList<MavenProject>();
-
-        final List<String> modules = project.getModules();
-        final List<String> moduleFullPaths = createFullPathsForModules(project, modules);
-        for (String moduleFullPath : moduleFullPaths) {
-            MavenProject moduleProject = getMavenProjectFromPath(moduleFullPath);
-            ret.add(moduleProject);
-
-            ret.addAll(getAllModules(moduleProject));
-        }
-
-        return ret;
+        return traversalCache.getAllModules(project);
     }
 
-    public List<Dependency> getDependenciesForAllModules(MavenProject project) throws MojoFailureException {
-        List<Dependency> ret = new ArrayList<Dependency>();
-
-        ret.addAll(project.getDependencies());
-
-        final List<String> modules = project.getModules();
-        final List<String> moduleFullPaths = createFullPathsForModules(project, modules);
-        for (String moduleFullPath : moduleFullPaths) {
-            MavenProject moduleProject = getMavenProjectFromPath(moduleFullPath);
-            ret.addAll(getDependenciesForAllModules(moduleProject));
-        }
-
-        return ret;
+    public Set<String> getAllModuleIdentifiers(MavenProject project) throws MojoFailureException {
+        return traversalCache.getAllModuleIdentifiers(project);
     }
 
-    private List<String> createFullPathsForModules(MavenProject project, List<String> modules) {
-        List<String> ret = new ArrayList<String>();
-        for (String module : modules) {
-            ret.add(project.getFile().getParent() + File.separator + module);
+    public List<Dependency> getDependenciesForAllModules(MavenProject project) throws MojoFailureException {
+        return traversalCache.getDependenciesForAllModules(project);
+    }
+
+    /**
+     * Forget the traversals, so the next ones start from scratch. The release itself never needs this, see
+     * {@link ReactorTraversalCache}.
+     */
+    public void invalidateTraversalCache() {
+        traversalCache.invalidate();
+    }
+
+    /**
+     * @param keys groupId:artifactId of modules
+     * @return the projects that depend on any of the modules, or define the version property of such a dependency
+     */
+    public List<MavenProject> getDependentProjects(Collection<String> keys) {
+        return reverseDependencyIndex.getDependents(keys);
+    }
+
+    /**
+     * @param releasedVersions the released version by groupId:artifactId
+     * @return the version properties defined in the project for the released modules, with their new value
+     */
+    public Map<String, String> getVersionProperties(MavenProject project, Map<String, String> releasedVersions) {
+        return reverseDependencyIndex.getVersionProperties(project, releasedVersions);
+    }
+
+    /**
+     * @return the versions of every parent that the projects in the reactor use, by groupId:artifactId
+     */
+    public Map<String, Set<String>> getVersionsPerParentPom() {
+        final Map<String, Set<String>> versionsPerParentPom = new HashMap<String, Set<String>>();
+        for (MavenProject project : session.getProjects()) {
+            final MavenProject parent = project.getParent();
+            if (parent != null) {
+                final String key = createProjectIdentifier(parent);
+                Set<String> versions = versionsPerParentPom.get(key);
+                if (versions == null) {
+                    versions = new HashSet<String>();
+                    versionsPerParentPom.put(key, versions);
+                }
+                versions.add(parent.getVersion());
+            }
         }
-        return ret;
+        return versionsPerParentPom;
     }
 
-
     public List<ProjectModule> getDirectChildrenOfParent() {
         List<ProjectModule> ret = new ArrayList<ProjectModule>();
-        final List<ProjectModule> modules = getFlatListOfAllModules(config.getModules());
+        final List<ProjectModule> modules = moduleRegistry.getAllModules();
         for (ProjectModule module : modules) {
             if (module.getParent() == null) {
                 ret.add(module);
@@ -91,29 +119,15 @@ public class ConfigUtil {
     }
 
     public ProjectModule getModuleForDependency(Dependency dependency) {
-        final List<ProjectModule> allModules = getFlatListOfAllModules(config.getModules());
-        for (ProjectModule module : allModules) {
-            if (dependency.getGroupId().equals(module.getGroupId())
-             && dependency.getArtifactId().equals(module.getArtifactId())) {
-                return module;
-            }
-        }
-        return null;
+        return moduleRegistry.getModule(dependency.getGroupId(), dependency.getArtifactId());
     }
 
     public ProjectModule getModuleForIdentifier(Identifier identifier) {
-        final List<ProjectModule> allModules = getFlatListOfAllModules(config.getModules());
-        for (ProjectModule module : allModules) {
-            if (identifier.getGroupId().equals(module.getGroupId())
-             && identifier.getArtifactId().equals(module.getArtifactId())) {
-                return module;
-            }
-        }
-        return null;
+        return moduleRegistry.getModule(identifier.getGroupId(), identifier.getArtifactId());
     }
 
     public List<ProjectModule> getFlatListOfAllModules() {
-        return getFlatListOfAllModules(config.getModules());
+        return moduleRegistry.getAllModules();
     }
 
     public static List<ProjectModule> getFlatListOfAllModules(List<ProjectModule> modules) {
@@ -146,25 +160,23 @@ public class ConfigUtil {
         return null;
     }
 
+    /**
+     * Find the project in the given path, relative to the project base.
+     */
     public MavenProject getMavenProjectFromPath(String path) throws MojoFailureException {
-        for (MavenProject mavenProject : session.getProjects()) {
-            final String parent = normalizeFileSeparators(mavenProject.getFile().getParent());
-            if (parent.endsWith(normalizeFileSeparators(path))) {
-                return mavenProject;
-            }
+        final MavenProject mavenProject = moduleRegistry.getProjectByPath(normalizeFileSeparators(path));
+        if (mavenProject == null) {
+            throw new MojoFailureException("Can't find maven project in path: " + path);
         }
-        throw new MojoFailureException("Can't find maven project in path: " + path);
+        return mavenProject;
     }
 
     public ProjectModule getProjectModuleFromMavenProject(MavenProject mavenProject) throws MojoFailureException {
-        final String parentKey = createProjectIdentifier(mavenProject);
-        for (ProjectModule module : getFlatListOfAllModules(config.getModules())) {
-            final String moduleKey = createProjectIdentifier(module);
-            if (parentKey.equals(moduleKey)) {
-                return module;
-            }
+        final ProjectModule module = moduleRegistry.getModule(mavenProject.getGroupId(), mavenProject.getArtifactId());
+        if (module == null) {
+            throw new MojoFailureException("Can't find module for MavenProject: " + mavenProject);
         }
-        throw new MojoFailureException("Can't find module for MavenProject: " + mavenProject);
+        return module;
     }
 
 //    public MavenProject getMavenProjectFromPath(String path, MavenSession session) throws MojoFailureException {
@@ -0,0 +1,33 @@
+package org.jkva;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Releases the SNAPSHOT version without the -SNAPSHOT suffix and increments the last number for the next development
+ * version, like the Release Plugin does in batch mode: 1.2-SNAPSHOT is released as 1.2, followed by 1.3-SNAPSHOT.
+ */
+public class DefaultVersionPolicy implements VersionPolicy {
+
+    static final String SNAPSHOT = "-SNAPSHOT";
+    private static final Pattern LAST_NUMBER = Pattern.compile("(\\d+)(\\D*)$");
+
+    public String getReleaseVersion(String developmentVersion) throws MojoFailureException {
+        if (!developmentVersion.endsWith(SNAPSHOT)) {
+            throw new MojoFailureException("Version " + developmentVersion + " is not a SNAPSHOT version");
+        }
+        return developmentVersion.substring(0, developmentVersion.length() - SNAPSHOT.length());
+    }
+
+    public String getNextDevelopmentVersion(String releaseVersion) throws MojoFailureException {
+        final Matcher matcher = LAST_NUMBER.matcher(releaseVersion);
+        if (!matcher.find()) {
+            throw new MojoFailureException("Can't determine the next development version of " + releaseVersion
+                    + ", it doesn't contain a number");
+        }
+        final long next = Long.parseLong(matcher.group(1)) + 1;
+        return releaseVersion.substring(0, matcher.start(1)) + next + matcher.group(2) + SNAPSHOT;
+    }
+}
@@ -0,0 +1,226 @@
+package org.jkva;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Deploys released modules in the background. release:perform only installs the tagged artifacts in the local
+ * repository, so the downstream modules can be built right away, while the upload to the remote repository runs here.
+ * The deploy builds the checkout of the tag that release:perform left behind, without running the tests again, with
+ * the arguments and release profiles of the Release Plugin configuration of the module. Modules that configure the
+ * goals of release:perform are rejected before they are released, because -Dgoals can't override those.
+ * <p/>
+ * The checkout is moved out of the working copy before the working copy is used for the next release, so a clean build
+ * in the working copy can't delete it while it is deployed.
+ * <p/>
+ * A failed deploy stops the release at the next wave: the modules released after it would depend on artifacts that
+ * are not in the remote repository. The release is only done when all deploys succeeded.
+ */
+public class DeployPipeline {
+
+    /**
+     * The directory that release:perform checks the tag out in, relative to the module.
+     */
+    static final String CHECKOUT_DIRECTORY = "target/checkout";
+
+    private final Log log;
+    private final ProcessFactory processFactory;
+    private final ReleaseJournal journal;
+    private final File stagingDirectory;
+    private final ExecutorService executor;
+    private final Map<String, Future<?>> deploys = new LinkedHashMap<String, Future<?>>();
+
+    /**
+     * @param stagingDirectory the directory the checkouts of the tags are moved to until they are deployed
+     * @param threads          the maximum number of modules that are deployed at the same time
+     */
+    public DeployPipeline(Log log, ProcessFactory processFactory, ReleaseJournal journal, File stagingDirectory,
+                          int threads) throws MojoFailureException {
+        if (threads < 1) {
+            throw new MojoFailureException("The number of deploy threads must be at least 1, but was: " + threads);
+        }
+        this.log = log;
+        this.processFactory = processFactory;
+        this.journal = journal;
+        this.stagingDirectory = stagingDirectory;
+        this.executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("deploy-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Check that release:perform of the project can be split into an install and a deploy: only the default goals
+     * can be replaced by install. Goals in the POM configuration win over -Dgoals, so release:perform would still
+     * deploy, and the artifacts would be deployed twice.
+     *
+     * @throws MojoFailureException when the goals are configured
+     */
+    public void checkSupported(String moduleKey, MavenProject project) throws MojoFailureException {
+        final ReleasePluginConfiguration configuration = ReleasePluginConfiguration.of(project);
+        if (configuration.hasConfiguredGoals()) {
+            throw new MojoFailureException("The Release Plugin of " + moduleKey + " is configured with the goals ["
+                    + configuration.getGoals() + "], which can't be replaced by install. Remove the goals from the "
+                    + "configuration, or release without pipelinedDeploy");
+        }
+    }
+
+    /**
+     * @return the options for release:perform, which installs instead of running its configured goals
+     */
+    public String getPerformOptions() {
+        return " -Dgoals=install";
+    }
+
+    /**
+     * Start deploying a module that release:perform installed. The deploy runs the goals, arguments and release
+     * profiles that release:perform would have used, so the same artifacts are deployed, signed and attached.
+     * Must be called while the working copy is still in use by the release, the checkout is moved out of it first.
+     *
+     * @param workingCopy the working copy the module was released in
+     * @param path        the path of the module in the working copy
+     */
+    public synchronized void deploy(final String moduleKey, final String groupId, final String artifactId,
+                                    MavenProject project, final File workingCopy, final String path)
+            throws MojoFailureException {
+        checkSupported(moduleKey, project);
+        if (!journal.begin(moduleKey, ReleaseStep.DEPLOY)) {
+            return;
+        }
+        final ReleasePluginConfiguration configuration = ReleasePluginConfiguration.of(project);
+        final String goals = configuration.getGoals() + " -DskipTests" + configuration.getBuildOptions();
+        final File checkout = stage(moduleKey, new File(workingCopy, path + "/" + CHECKOUT_DIRECTORY),
+                new File(stagingDirectory, groupId + "/" + artifactId));
+        log.info("Deploying " + moduleKey + " in the background");
+        deploys.put(moduleKey, executor.submit(new Callable<Void>() {
+            public Void call() throws MojoFailureException {
+                processFactory.createMavenInvoker(checkout, "", groupId, artifactId).execute(goals);
+                journal.complete(moduleKey, ReleaseStep.DEPLOY);
+                log.info("Deployed " + moduleKey);
+                delete(checkout);
+                return null;
+            }
+        }));
+    }
+
+    /**
+     * Move the checkout of the tag to the staging directory. When resuming, the checkout may have been moved already.
+     *
+     * @return the staged checkout
+     */
+    private File stage(String moduleKey, File checkout, File staged) throws MojoFailureException {
+        try {
+            if (checkout.isDirectory()) {
+                FileUtils.deleteDirectory(staged);
+                Files.createParentDirs(staged);
+                // Moving is only possible within a file system
+                if (!checkout.renameTo(staged)) {
+                    FileUtils.copyDirectoryStructure(checkout, staged);
+                    FileUtils.deleteDirectory(checkout);
+                }
+            } else if (!staged.isDirectory()) {
+                throw new MojoFailureException("The checkout of the tag of " + moduleKey + " is not found in "
+                        + checkout + " or " + staged + ", it can't be deployed");
+            }
+        } catch (IOException e) {
+            throw new MojoFailureException("Can't move the checkout of the tag of " + moduleKey + " to " + staged, e);
+        }
+        return staged;
+    }
+
+    private void delete(File staged) {
+        try {
+            FileUtils.deleteDirectory(staged);
+        } catch (IOException e) {
+            log.warn("Can't delete " + staged + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @throws MojoFailureException when a deploy that finished failed
+     */
+    public synchronized void checkFailures() throws MojoFailureException {
+        final Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+        for (Map.Entry<String, Future<?>> deploy : deploys.entrySet()) {
+            if (deploy.getValue().isDone()) {
+                addFailure(failures, deploy.getKey(), deploy.getValue());
+            }
+        }
+        throwFailures(failures);
+    }
+
+    /**
+     * Wait for all deploys to finish.
+     *
+     * @throws MojoFailureException when any of them failed
+     */
+    public void awaitAll() throws MojoFailureException {
+        final List<Map.Entry<String, Future<?>>> pending;
+        synchronized (this) {
+            pending = new ArrayList<Map.Entry<String, Future<?>>>(deploys.entrySet());
+        }
+        if (!pending.isEmpty()) {
+            log.info("Waiting for " + pending.size() + " deploys to finish");
+        }
+        final Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+        for (Map.Entry<String, Future<?>> deploy : pending) {
+            addFailure(failures, deploy.getKey(), deploy.getValue());
+        }
+        executor.shutdown();
+        throwFailures(failures);
+    }
+
+    /**
+     * Let the deploys that were started finish, also when the release failed, so that no upload is broken off and the
+     * journal knows which modules were deployed.
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.info("Waiting for the running deploys to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void addFailure(Map<String, Throwable> failures, String moduleKey, Future<?> deploy)
+            throws MojoFailureException {
+        try {
+            deploy.get();
+        } catch (ExecutionException e) {
+            failures.put(moduleKey, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoFailureException("Interrupted while waiting for the deploy of " + moduleKey, e);
+        }
+    }
+
+    private void throwFailures(Map<String, Throwable> failures) throws MojoFailureException {
+        if (failures.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Throwable> failure : failures.entrySet()) {
+            log.error("Deploying " + failure.getKey() + " failed: " + failure.getValue().getMessage());
+        }
+        throw new MojoFailureException("Deploying " + failures.size() + " released modules failed: "
+                + failures.keySet() + ". Run again with -Dresume to deploy them", failures.values().iterator().next());
+    }
+}
@@ -0,0 +1,136 @@
+package org.jkva;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.maven.Maven;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.LegacySupport;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Invoker that runs the goals inside the current JVM, so Maven doesn't have to start, resolve its plugins and load
+ * its classes again for every goal. Every execution gets its own {@link MavenExecutionRequest}, based on the settings
+ * of the current session. Output is logged by Maven itself, so it is not captured.
+ * <p/>
+ * Maven keeps some state per JVM (like the current session), so executions are run one at a time, by all invokers
+ * together: builds never run in parallel with this backend, which is why the release goal only allows it with a
+ * single worker and without pipelined deploys. Output listeners are rejected, because there is no output to give
+ * them; goals of which the output is needed have to be forked.
+ */
+public class EmbeddedMavenInvoker extends Invoker {
+
+    private static final Object LOCK = new Object();
+
+    private final Maven maven;
+    private final LegacySupport legacySupport;
+    private final MavenSession session;
+
+    public EmbeddedMavenInvoker(Log log, File workDir, Maven maven, LegacySupport legacySupport, MavenSession session,
+                                ReleaseMetrics metrics) {
+        super(log, workDir, metrics);
+        this.maven = maven;
+        this.legacySupport = legacySupport;
+        this.session = session;
+    }
+
+    @Override
+    public int execute(String goals) throws MojoFailureException {
+        if (!outputListeners.isEmpty()) {
+            throw new MojoFailureException("The in-process backend doesn't capture output, so [" + goals
+                    + "] can't be run with an output listener. Fork it instead");
+        }
+        final MavenExecutionRequest request = createRequest(splitArguments(goals));
+        getLog().info(" - Goals (in-process): " + request.getGoals() + ", properties: " + request.getUserProperties());
+
+        final MavenExecutionResult result;
+        synchronized (LOCK) {
+            final MavenSession currentSession = legacySupport.getSession();
+            final long startTime = System.currentTimeMillis();
+            try {
+                result = maven.execute(request);
+            } finally {
+                legacySupport.setSession(currentSession);
+                recordExecution(goals, System.currentTimeMillis() - startTime, 0);
+            }
+        }
+
+        if (result.hasExceptions()) {
+            final Throwable cause = result.getExceptions().get(0);
+            throw new MojoFailureException(ERR_MSG + cause.getMessage(), cause);
+        }
+        return 0;
+    }
+
+    private MavenExecutionRequest createRequest(List<String> arguments) throws MojoFailureException {
+        final MavenExecutionRequest request = DefaultMavenExecutionRequest.copy(session.getRequest());
+        final List<String> goals = new ArrayList<String>();
+        final Properties userProperties = new Properties();
+
+        for (int i = 0; i < arguments.size(); i++) {
+            final String argument = arguments.get(i);
+            if (argument.isEmpty()) {
+                continue;
+            }
+            if (argument.startsWith("-D")) {
+                final String property = argument.substring(2);
+                final int separator = property.indexOf('=');
+                if (separator < 0) {
+                    userProperties.setProperty(property, "true");
+                } else {
+                    userProperties.setProperty(property.substring(0, separator), unquote(property.substring(separator + 1)));
+                }
+            } else if (argument.equals("--batch-mode") || argument.equals("-B")) {
+                request.setInteractiveMode(false);
+            } else if (argument.equals("-T") && i + 1 < arguments.size()) {
+                request.setDegreeOfConcurrency(Integer.parseInt(arguments.get(++i)));
+            } else if (argument.startsWith("-")) {
+                throw new MojoFailureException("Option not supported by the in-process backend: " + argument);
+            } else {
+                goals.add(argument);
+            }
+        }
+
+        final Properties systemProperties = new Properties();
+        systemProperties.putAll(session.getRequest().getSystemProperties());
+        systemProperties.putAll(userProperties);
+
+        request.setGoals(goals);
+        request.setUserProperties(userProperties);
+        request.setSystemProperties(systemProperties);
+        request.setBaseDirectory(workDir);
+        request.setPom(new File(workDir, "pom.xml"));
+        request.setProjectPresent(true);
+        request.setRecursive(true);
+        request.setSelectedProjects(Collections.<String>emptyList());
+        request.setResumeFrom(null);
+        request.setMakeBehavior(null);
+        request.setStartTime(new Date());
+        return request;
+    }
+
+    private String unquote(String value) {
+        if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * @return nothing, the output is logged by Maven and not captured
+     */
+    @Override
+    public ImmutableList<String> getOutput() {
+        return ImmutableList.of();
+    }
+}
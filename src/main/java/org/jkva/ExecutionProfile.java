@@ -0,0 +1,159 @@
+package org.jkva;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Strings;
+
+/**
+ * How a forked Maven build runs: the number of builder threads (-T), the maximum heap and the number of threads that
+ * download and upload artifacts. The default profile is derived from the cores and memory of the machine, shared by
+ * the builds that run at the same time. Profiles in the plugin configuration override it for specific modules:
+ * <pre>
+ * &lt;executionProfiles&gt;
+ *   &lt;executionProfile&gt;
+ *     &lt;module&gt;groupId:artifactId&lt;/module&gt;
+ *     &lt;builderThreads&gt;1&lt;/builderThreads&gt;
+ *     &lt;heap&gt;4g&lt;/heap&gt;
+ *     &lt;transferThreads&gt;8&lt;/transferThreads&gt;
+ *   &lt;/executionProfile&gt;
+ * &lt;/executionProfiles&gt;
+ * </pre>
+ * The heap and transfer threads are passed in MAVEN_OPTS, so the builds that release:prepare and release:perform
+ * fork themselves use them as well.
+ */
+public class ExecutionProfile {
+
+    private static final int MIN_HEAP_MB = 256;
+    private static final int MAX_HEAP_MB = 8192;
+    private static final int MIN_TRANSFER_THREADS = 5;
+    private static final int MAX_TRANSFER_THREADS = 16;
+
+    /**
+     * groupId:artifactId, or only the artifactId, of the module the profile is for.
+     */
+    private String module;
+    private Integer builderThreads;
+    /**
+     * Like -Xmx, for example 2048m or 2g.
+     */
+    private String heap;
+    private Integer transferThreads;
+
+    public ExecutionProfile() {
+    }
+
+    public ExecutionProfile(String module, Integer builderThreads, String heap, Integer transferThreads) {
+        this.module = module;
+        this.builderThreads = builderThreads;
+        this.heap = heap;
+        this.transferThreads = transferThreads;
+    }
+
+    /**
+     * Divide the machine over the builds: every worker gets its share of the cores, and every JVM that runs at the
+     * same time its share of half of the physical memory. The other half is left for the operating system, this build
+     * and the test JVMs.
+     * <p/>
+     * A worker runs two JVMs with the heap of MAVEN_OPTS: the forked build, and the build that release:prepare or
+     * release:perform forks in it. Only the inner one builds, so the cores are divided by the workers. A deploy is
+     * one more JVM.
+     *
+     * @param workers     the number of modules that are released at the same time
+     * @param deployForks the number of deploys that run at the same time, next to the workers
+     */
+    public static ExecutionProfile createDefault(int workers, int deployForks) {
+        final int cores = Runtime.getRuntime().availableProcessors();
+        final long memory = getPhysicalMemory();
+        return createDefault(cores, memory, workers, deployForks);
+    }
+
+    static ExecutionProfile createDefault(int cores, long physicalMemory, int workers, int deployForks) {
+        final int builds = Math.max(1, workers);
+        final int jvms = 2 * builds + Math.max(0, deployForks);
+        final int builderThreads = Math.max(1, cores / builds);
+        String heap = null;
+        if (physicalMemory > 0) {
+            final long heapMb = physicalMemory / 2 / jvms / (1024 * 1024);
+            heap = Math.max(MIN_HEAP_MB, Math.min(MAX_HEAP_MB, heapMb)) + "m";
+        }
+        final int transferThreads = Math.max(MIN_TRANSFER_THREADS, Math.min(MAX_TRANSFER_THREADS, 2 * builderThreads));
+        return new ExecutionProfile(null, builderThreads, heap, transferThreads);
+    }
+
+    /**
+     * @return the total physical memory in bytes, or 0 when the JVM doesn't tell
+     */
+    private static long getPhysicalMemory() {
+        final OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+        try {
+            // com.sun.management.OperatingSystemMXBean, not available on every JVM
+            final Method method = operatingSystem.getClass().getMethod("getTotalPhysicalMemorySize");
+            method.setAccessible(true);
+            return ((Number) method.invoke(operatingSystem)).longValue();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return this profile, with the values that are set in the override replaced
+     */
+    public ExecutionProfile overrideWith(ExecutionProfile override) {
+        return new ExecutionProfile(override.module,
+                override.builderThreads != null ? override.builderThreads : builderThreads,
+                !Strings.isNullOrEmpty(override.heap) ? override.heap : heap,
+                override.transferThreads != null ? override.transferThreads : transferThreads);
+    }
+
+    public boolean isFor(String groupId, String artifactId) {
+        return module != null
+                && (module.equals(ConfigUtil.createProjectIdentifier(groupId, artifactId)) || module.equals(artifactId));
+    }
+
+    /**
+     * @return the options for the command line of the build
+     */
+    public List<String> getArguments() {
+        final List<String> ret = new ArrayList<String>();
+        if (builderThreads != null) {
+            ret.add("-T");
+            ret.add(String.valueOf(builderThreads));
+        }
+        return ret;
+    }
+
+    /**
+     * @param inheritedMavenOpts MAVEN_OPTS of the environment, the options of the profile come after them and win
+     */
+    public String getMavenOpts(String inheritedMavenOpts) {
+        final StringBuilder sb = new StringBuilder(Strings.nullToEmpty(inheritedMavenOpts).trim());
+        if (!Strings.isNullOrEmpty(heap)) {
+            sb.append(" -Xmx").append(heap);
+        }
+        if (transferThreads != null) {
+            // Maven 3.0 - 3.8 downloads with maven.artifact.threads, the resolver connector uploads and downloads with
+            // aether.connector.basic.threads
+            sb.append(" -Dmaven.artifact.threads=").append(transferThreads);
+            sb.append(" -Daether.connector.basic.threads=").append(transferThreads);
+        }
+        return sb.toString().trim();
+    }
+
+    public String getModule() {
+        return module;
+    }
+
+    @Override
+    public String toString() {
+        return (module != null ? module + ": " : "") + "builder threads " + orDefault(builderThreads) + ", heap "
+                + orDefault(heap) + ", transfer threads " + orDefault(transferThreads);
+    }
+
+    private static String orDefault(Object value) {
+        return value != null ? value.toString() : "default";
+    }
+}
@@ -0,0 +1,36 @@
+package org.jkva;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The execution profile of every forked build: the default profile, overridden by the configured profile of the
+ * module, if there is one.
+ */
+public class ExecutionProfiles {
+
+    private final ExecutionProfile defaultProfile;
+    private final List<ExecutionProfile> overrides;
+
+    public ExecutionProfiles(ExecutionProfile defaultProfile, List<ExecutionProfile> overrides) {
+        this.defaultProfile = defaultProfile;
+        this.overrides = overrides != null ? overrides : new ArrayList<ExecutionProfile>();
+    }
+
+    public ExecutionProfile getDefaultProfile() {
+        return defaultProfile;
+    }
+
+    public List<ExecutionProfile> getOverrides() {
+        return overrides;
+    }
+
+    public ExecutionProfile getProfile(String groupId, String artifactId) {
+        for (ExecutionProfile override : overrides) {
+            if (override.isFor(groupId, artifactId)) {
+                return defaultProfile.overrideWith(override);
+            }
+        }
+        return defaultProfile;
+    }
+}
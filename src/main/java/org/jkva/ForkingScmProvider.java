@@ -0,0 +1,52 @@
+package org.jkva;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Runs the goals of the Maven SCM Plugin, for any SCM it supports. Every operation forks Maven, and the local changes
+ * are read from the console output of scm:status.
+ */
+public class ForkingScmProvider implements ScmProvider {
+
+    private static final String INFO = "[INFO] ";
+
+    private final ProcessFactory processFactory;
+
+    public ForkingScmProvider(ProcessFactory processFactory) {
+        this.processFactory = processFactory;
+    }
+
+    public void update() throws MojoFailureException {
+        processFactory.createMavenInvoker("").execute("scm:update");
+    }
+
+    public List<LocalChange> getLocalChanges() throws MojoFailureException {
+        final Invoker scmStatusInvoker = processFactory.createForkedMavenInvoker("");
+        final ScmStatusListener scmStatusListener = new ScmStatusListener();
+        scmStatusInvoker.addOutputListener(scmStatusListener);
+        scmStatusInvoker.execute("scm:status");
+        final List<LocalChange> ret = new ArrayList<LocalChange>();
+        for (String statusLine : scmStatusListener.getStatusLines()) {
+            ret.add(parse(statusLine));
+        }
+        return ret;
+    }
+
+    /**
+     * The plugin logs a change as "[INFO] status: path". Other lines are kept as they are.
+     */
+    private static LocalChange parse(String statusLine) {
+        final String line = statusLine.startsWith(INFO) ? statusLine.substring(INFO.length()) : statusLine;
+        final int separator = line.indexOf(": ");
+        if (separator < 0) {
+            return new LocalChange("changed", line.trim());
+        }
+        return new LocalChange(line.substring(0, separator).trim(), line.substring(separator + 2).trim());
+    }
+
+    public void close() {
+    }
+}
@@ -0,0 +1,41 @@
+package org.jkva;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs git commands, for the things the Maven SCM plugin can't do, like pushing tags.
+ */
+public class GitInvoker extends ProcessInvoker {
+
+    public GitInvoker(Log log, final File workDir, final boolean redirectLogs, ProcessSupervisor supervisor,
+                       ReleaseMetrics metrics) {
+        super(log, workDir, redirectLogs, supervisor, metrics);
+    }
+
+    @Override
+    protected String getGoal(String goals) {
+        return "git " + splitArguments(goals).get(0);
+    }
+
+    @Override
+    protected boolean isScmOperation(String goal) {
+        return true;
+    }
+
+    @Override
+    protected Process doExecute(String arguments, ProcessBuilder processBuilder) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add("git");
+        command.addAll(splitArguments(arguments));
+        getLog().info(" - Command: " + command);
+        processBuilder.command(command);
+        processBuilder.directory(workDir.getCanonicalFile());
+        return processBuilder.start();
+    }
+
+}
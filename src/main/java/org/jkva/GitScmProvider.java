@@ -0,0 +1,148 @@
+package org.jkva;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.PullResult;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.StatusCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.lib.BranchConfig;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+/**
+ * Updates and inspects a Git working copy in-process, with JGit, instead of forking Maven for scm:update and
+ * scm:status. When JGit can't reach the remote, for example because the credentials are only known to a credential
+ * helper of the git command, the update falls back to git pull.
+ */
+public class GitScmProvider implements ScmProvider {
+
+    private final Log log;
+    private final ProcessFactory processFactory;
+    private final ReleaseMetrics metrics;
+    private final Repository repository;
+    private final Git git;
+    /**
+     * The project directory in the repository, empty for the root of the work tree.
+     */
+    private final String path;
+
+    private GitScmProvider(Log log, ProcessFactory processFactory, ReleaseMetrics metrics, Repository repository,
+                           String path) {
+        this.log = log;
+        this.processFactory = processFactory;
+        this.metrics = metrics;
+        this.repository = repository;
+        this.git = new Git(repository);
+        this.path = path;
+    }
+
+    /**
+     * @return the provider, or null when the project is not in a Git repository
+     */
+    public static GitScmProvider open(Log log, ProcessFactory processFactory, ReleaseMetrics metrics, File projectBase)
+            throws MojoFailureException {
+        final Repository repository;
+        try {
+            repository = new FileRepositoryBuilder().findGitDir(projectBase).setMustExist(true).build();
+        } catch (IllegalArgumentException e) {
+            return null;
+        } catch (IOException e) {
+            throw new MojoFailureException("Can't open the Git repository of " + projectBase, e);
+        }
+        try {
+            return new GitScmProvider(log, processFactory, metrics, repository, getPathInRepository(repository, projectBase));
+        } catch (IOException e) {
+            repository.close();
+            throw new MojoFailureException("Can't find " + projectBase + " in the Git repository", e);
+        }
+    }
+
+    private static String getPathInRepository(Repository repository, File directory) throws IOException {
+        final String workTree = repository.getWorkTree().getCanonicalPath().replace('\\', '/');
+        final String path = directory.getCanonicalPath().replace('\\', '/');
+        if (path.equals(workTree)) {
+            return "";
+        }
+        if (!path.startsWith(workTree + "/")) {
+            throw new IOException(directory + " is not in the Git repository " + workTree);
+        }
+        return path.substring(workTree.length() + 1);
+    }
+
+    public void update() throws MojoFailureException {
+        final long startTime = System.currentTimeMillis();
+        try {
+            final String branch = repository.getBranch();
+            if (new BranchConfig(repository.getConfig(), branch).getTrackingBranch() == null) {
+                log.warn("Branch " + branch + " has no upstream branch, the working copy is not updated");
+                return;
+            }
+            final PullResult result = git.pull().call();
+            // A pull merges or rebases, depending on the configuration of the branch
+            final Object outcome = result.getMergeResult() != null ? result.getMergeResult().getMergeStatus()
+                    : result.getRebaseResult() != null ? result.getRebaseResult().getStatus() : "fetched only";
+            if (!result.isSuccessful()) {
+                throw new MojoFailureException("Updating the working copy failed: " + outcome);
+            }
+            log.info("Updated the working copy: " + outcome);
+        } catch (TransportException e) {
+            log.info("JGit can't reach the remote (" + e.getMessage() + "), updating with git pull");
+            processFactory.createGitInvoker("").execute("pull");
+        } catch (GitAPIException e) {
+            throw new MojoFailureException("Updating the working copy failed", e);
+        } catch (IOException e) {
+            throw new MojoFailureException("Updating the working copy failed", e);
+        } finally {
+            metrics.recordScmOperation("jgit pull", System.currentTimeMillis() - startTime);
+        }
+    }
+
+    public List<LocalChange> getLocalChanges() throws MojoFailureException {
+        final long startTime = System.currentTimeMillis();
+        try {
+            final StatusCommand command = git.status();
+            if (!path.isEmpty()) {
+                command.addPath(path);
+            }
+            final Status status = command.call();
+            final List<LocalChange> ret = new ArrayList<LocalChange>();
+            addChanges(ret, "added", status.getAdded());
+            addChanges(ret, "modified", union(status.getChanged(), status.getModified()));
+            addChanges(ret, "removed", status.getRemoved());
+            addChanges(ret, "missing", status.getMissing());
+            addChanges(ret, "conflicting", status.getConflicting());
+            addChanges(ret, "untracked", status.getUntracked());
+            return ret;
+        } catch (GitAPIException e) {
+            throw new MojoFailureException("Can't read the status of the working copy", e);
+        } finally {
+            metrics.recordScmOperation("jgit status", System.currentTimeMillis() - startTime);
+        }
+    }
+
+    private static Set<String> union(Set<String> first, Set<String> second) {
+        final Set<String> ret = new TreeSet<String>(first);
+        ret.addAll(second);
+        return ret;
+    }
+
+    private static void addChanges(List<LocalChange> changes, String status, Set<String> paths) {
+        for (String path : new TreeSet<String>(paths)) {
+            changes.add(new LocalChange(status, path));
+        }
+    }
+
+    public void close() {
+        repository.close();
+    }
+}
@@ -0,0 +1,82 @@
+package org.jkva;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Minimal JSON writer for the reports the plugin produces. Supports maps, collections, strings, numbers, booleans
+ * and null.
+ */
+public class JsonUtil {
+
+    public static String toJson(Object value) {
+        final StringBuilder sb = new StringBuilder();
+        appendValue(sb, value);
+        return sb.toString();
+    }
+
+    private static void appendValue(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else if (value instanceof Map) {
+            sb.append('{');
+            final Iterator<? extends Map.Entry<?, ?>> it = ((Map<?, ?>) value).entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<?, ?> entry = it.next();
+                appendString(sb, String.valueOf(entry.getKey()));
+                sb.append(':');
+                appendValue(sb, entry.getValue());
+                if (it.hasNext()) {
+                    sb.append(',');
+                }
+            }
+            sb.append('}');
+        } else if (value instanceof Collection) {
+            sb.append('[');
+            final Iterator<?> it = ((Collection<?>) value).iterator();
+            while (it.hasNext()) {
+                appendValue(sb, it.next());
+                if (it.hasNext()) {
+                    sb.append(',');
+                }
+            }
+            sb.append(']');
+        } else {
+            appendString(sb, value.toString());
+        }
+    }
+
+    private static void appendString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
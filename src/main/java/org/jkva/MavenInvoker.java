@@ -4,14 +4,22 @@ import org.apache.maven.plugin.logging.Log;
 
 import java.io.*;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Jan-Kees van Andel - @jankeesvanandel
  */
-public class MavenInvoker extends Invoker {
+public class MavenInvoker extends ProcessInvoker {
 
-    public MavenInvoker(Log log, final File workDir, final boolean redirectLogs) {
-        super(log, workDir, redirectLogs);
+    private final ExecutionProfile profile;
+
+    /**
+     * @param profile how the build runs, or null to run it as Maven does by default
+     */
+    public MavenInvoker(Log log, final File workDir, final boolean redirectLogs, ProcessSupervisor supervisor,
+                         ReleaseMetrics metrics, ExecutionProfile profile) {
+        super(log, workDir, redirectLogs, supervisor, metrics);
+        this.profile = profile;
     }
 
     @Override
@@ -19,6 +27,11 @@ public class MavenInvoker extends Invoker {
         String mvnBin = processBuilder.environment().get("M2_BIN");
         String exec = new File(mvnBin).getCanonicalPath();
         List<String> goalsList = getProcessArguments(arguments, exec);
+        if (profile != null) {
+            goalsList.addAll(1, profile.getArguments());
+            final Map<String, String> environment = processBuilder.environment();
+            environment.put("MAVEN_OPTS", profile.getMavenOpts(environment.get("MAVEN_OPTS")));
+        }
         processBuilder.command(goalsList);
         File canonicalWorkDir = workDir.getCanonicalFile();
         processBuilder.directory(canonicalWorkDir);
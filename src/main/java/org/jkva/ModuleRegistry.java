@@ -0,0 +1,101 @@
+package org.jkva;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import static org.jkva.ConfigUtil.createProjectIdentifier;
+
+/**
+ * Immutable index of all modules in the {@link Config} and all projects in the reactor, so modules and projects can be
+ * looked up by groupId:artifactId or by path without scanning all of them.
+ */
+public final class ModuleRegistry {
+
+    private final File projectBase;
+    private final ImmutableList<ProjectModule> allModules;
+    private final ImmutableMap<String, ProjectModule> modulesByIdentifier;
+    private final ImmutableMap<String, MavenProject> projectsByPath;
+    private final ImmutableMap<String, MavenProject> projectsByLowerCasePath;
+
+    private ModuleRegistry(File projectBase, List<ProjectModule> allModules,
+                           Map<String, ProjectModule> modulesByIdentifier, Map<String, MavenProject> projectsByPath,
+                           Map<String, MavenProject> projectsByLowerCasePath) {
+        this.projectBase = projectBase;
+        this.allModules = ImmutableList.copyOf(allModules);
+        this.modulesByIdentifier = ImmutableMap.copyOf(modulesByIdentifier);
+        this.projectsByPath = ImmutableMap.copyOf(projectsByPath);
+        this.projectsByLowerCasePath = ImmutableMap.copyOf(projectsByLowerCasePath);
+    }
+
+    public static ModuleRegistry create(Config config, List<MavenProject> projects) throws MojoFailureException {
+        final List<ProjectModule> allModules = ConfigUtil.getFlatListOfAllModules(config.getModules());
+
+        // When there are duplicates, the first one wins, just like the linear scans used to do
+        final Map<String, ProjectModule> modulesByIdentifier = new LinkedHashMap<String, ProjectModule>();
+        for (ProjectModule module : allModules) {
+            final String key = createProjectIdentifier(module);
+            if (!modulesByIdentifier.containsKey(key)) {
+                modulesByIdentifier.put(key, module);
+            }
+        }
+
+        final Map<String, MavenProject> projectsByPath = new LinkedHashMap<String, MavenProject>();
+        final Map<String, MavenProject> projectsByLowerCasePath = new LinkedHashMap<String, MavenProject>();
+        for (MavenProject project : projects) {
+            final String path = canonicalPath(project.getFile().getParentFile());
+            if (!projectsByPath.containsKey(path)) {
+                projectsByPath.put(path, project);
+            }
+            final String lowerCasePath = path.toLowerCase(Locale.ENGLISH);
+            if (!projectsByLowerCasePath.containsKey(lowerCasePath)) {
+                projectsByLowerCasePath.put(lowerCasePath, project);
+            }
+        }
+
+        return new ModuleRegistry(config.getProjectBase(), allModules, modulesByIdentifier, projectsByPath,
+                projectsByLowerCasePath);
+    }
+
+    public List<ProjectModule> getAllModules() {
+        return allModules;
+    }
+
+    public ProjectModule getModule(String groupId, String artifactId) {
+        return modulesByIdentifier.get(groupId + ":" + artifactId);
+    }
+
+    /**
+     * Find the project in the given directory, relative to the project base. Paths are matched case sensitive first,
+     * and case insensitive when that doesn't give a match.
+     */
+    public MavenProject getProjectByPath(String relativePath) throws MojoFailureException {
+        return getProjectInDirectory(new File(projectBase, relativePath));
+    }
+
+    public MavenProject getProjectInDirectory(File directory) throws MojoFailureException {
+        final String path = canonicalPath(directory);
+        final MavenProject project = projectsByPath.get(path);
+        if (project != null) {
+            return project;
+        }
+        return projectsByLowerCasePath.get(path.toLowerCase(Locale.ENGLISH));
+    }
+
+    private static String canonicalPath(File file) throws MojoFailureException {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            throw new MojoFailureException("Can't determine canonical path of: " + file, e);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package org.jkva;
+
+/**
+ * Receives the output of an {@link Invoker} line by line, while the goals are running. Lines of stdout and stderr are
+ * passed to the listener one at a time, never concurrently.
+ */
+public interface OutputListener {
+
+    void onLine(String line);
+}
@@ -0,0 +1,35 @@
+package org.jkva;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Keeps the last lines of output, so long running builds don't keep all of their output in memory.
+ */
+public class OutputTail implements OutputListener {
+
+    private final int maxLines;
+    private final Deque<String> lines;
+
+    public OutputTail(int maxLines) {
+        this.maxLines = maxLines;
+        this.lines = new ArrayDeque<String>(maxLines);
+    }
+
+    public synchronized void onLine(String line) {
+        if (lines.size() == maxLines) {
+            lines.removeFirst();
+        }
+        lines.addLast(line);
+    }
+
+    public synchronized ImmutableList<String> getLines() {
+        return ImmutableList.copyOf(lines);
+    }
+
+    public synchronized void clear() {
+        lines.clear();
+    }
+}
@@ -7,6 +7,7 @@ import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 
@@ -22,9 +23,22 @@ public class ParentReleaseHelper {
     private Log log;
     private ConfigUtil configUtil;
     private final ReleasedModuleTracker releasedModuleTracker;
+    private final ReleaseJournal journal;
+    private final PomVersionRewriter pomVersionRewriter;
+    private final ScmCommitBatch commitBatch;
+    private final VersionPlan versionPlan;
+    private final VerificationCache verificationCache;
+    private final ReleaseMode releaseMode;
+    private final PomUpdateFanOut pomUpdateFanOut;
+    private final ReleaseApproval approval;
+    private final DeployPipeline deployPipeline;
 
     public ParentReleaseHelper(ProcessFactory processFactory, Config config, MavenSession session,
-                               MavenProject project, Log log, ConfigUtil configUtil, ReleasedModuleTracker releasedModuleTracker) {
+                               MavenProject project, Log log, ConfigUtil configUtil, ReleasedModuleTracker releasedModuleTracker,
+                               ReleaseJournal journal, ScmCommitBatch commitBatch, VersionPlan versionPlan,
+                               VerificationCache verificationCache, ReleaseMode releaseMode,
+                               PomUpdateFanOut pomUpdateFanOut, ReleaseApproval approval,
+                               DeployPipeline deployPipeline) {
         this.processFactory = processFactory;
         this.config = config;
         this.session = session;
@@ -32,6 +46,15 @@ public class ParentReleaseHelper {
         this.log = log;
         this.configUtil = configUtil;
         this.releasedModuleTracker = releasedModuleTracker;
+        this.journal = journal;
+        this.pomVersionRewriter = new PomVersionRewriter(log);
+        this.commitBatch = commitBatch;
+        this.versionPlan = versionPlan;
+        this.verificationCache = verificationCache;
+        this.releaseMode = releaseMode;
+        this.pomUpdateFanOut = pomUpdateFanOut;
+        this.approval = approval;
+        this.deployPipeline = deployPipeline;
     }
 
     /**
@@ -48,12 +71,8 @@ public class ParentReleaseHelper {
             final String usedParentVersion = getUsedVersionForProject(parentProject, versionsPerParentPom);
 
             if (!usedParentVersion.equals(latestParentVersion)) {
-                String input = PromptUtil.promptWithDefault("Project parent [" + usedParentVersion + "] is not " +
-                        "pointing to the latest version [" + latestParentVersion + "]. This doesn't have to be an " +
-                        "issue, the release will be made with the current parent version. Continue release?", "y");
-                if (!input.isEmpty() && !input.equalsIgnoreCase("y")) {
-                    throw new MojoFailureException("Release aborted by user");
-                }
+                log.warn("Project parent [" + usedParentVersion + "] is not pointing to the latest version ["
+                        + latestParentVersion + "], the release will be made with the current parent version");
             }
 
             final Artifact parentArtifact = project.getParentArtifact();
@@ -63,7 +82,7 @@ public class ParentReleaseHelper {
                 if (!releasedModuleTracker.containsReleasedModule(groupId, artifactId)) {
                     releaseParent(parentArtifact, parentPath);
                 }
-                updateChildProjectsWithLatestParentVersion();
+                updateChildProjectsWithLatestParentVersion(parentArtifact);
             }
         }
     }
@@ -79,32 +98,13 @@ public class ParentReleaseHelper {
         }
     }
 
-    private Map<String, Set<String>> validateThatAllModulesShareTheSameParentVersion() throws MojoFailureException {
-        final Map<String, Set<String>> versionsPerParentPom = new HashMap<String, Set<String>>();
-        final List<MavenProject> projects = session.getProjects();
-        for (MavenProject project : projects) {
-            final MavenProject parent = project.getParent();
-            if (parent != null) {
-                final String key = ConfigUtil.createProjectIdentifier(parent);
-                Set<String> versions = versionsPerParentPom.get(key);
-                if (versions == null) {
-                    versions = new HashSet<String>();
-                    versionsPerParentPom.put(key, versions);
-                }
-
-                versions.add(parent.getVersion());
-            }
-        }
+    private Map<String, Set<String>> validateThatAllModulesShareTheSameParentVersion() {
+        final Map<String, Set<String>> versionsPerParentPom = configUtil.getVersionsPerParentPom();
         log.info("All parent versions among modules: " + versionsPerParentPom);
         if (thereIsOnlyOneVersionPerParentArtifact(versionsPerParentPom)) {
             log.info("All modules use the same parent, continuing with release...");
         } else {
-            String cont = PromptUtil.promptWithDefault("Not all modules in the project share the same parent. Continue? (Yn)", "Y");
-            if (cont.equalsIgnoreCase("n")) {
-                throw new MojoFailureException("Not all modules in the project share the same parent. Release aborted");
-            } else {
-                log.info("Continuing with release...");
-            }
+            log.warn("Not all modules in the project share the same parent, continuing with release...");
         }
         return versionsPerParentPom;
     }
@@ -134,34 +134,102 @@ public class ParentReleaseHelper {
     }
 
     private void releaseModule(final String moduleName, final String path, Artifact parentArtifact) throws MojoFailureException {
-        String input = PromptUtil.promptWithDefault(moduleName + " dependency is snapshot. Release?", "y");
-        if (input.equalsIgnoreCase("n")) {
-            throw new MojoFailureException("Aborted by user");
+        final String groupId = parentArtifact.getGroupId();
+        final String artifactId = parentArtifact.getArtifactId();
+        final String moduleKey = ConfigUtil.createProjectIdentifier(groupId, artifactId);
+        approval.checkApproved(moduleKey);
+        releaseMode.checkSupported(moduleKey, configUtil.getMavenProjectFromPath(path));
+        if (deployPipeline != null) {
+            deployPipeline.checkSupported(moduleKey, configUtil.getMavenProjectFromPath(path));
         }
-        MavenInvoker mavenInvoker = processFactory.createMavenInvoker(path);
+        versionPlan.plan(groupId, artifactId, parentArtifact.getVersion());
 
-        int exitCode =
-                mavenInvoker
-                        .execute("clean install scm:update release:prepare release:perform --batch-mode -DautoVersionSubmodules=true");
+        int exitCode = 0;
+        if (releaseMode.isVerifyBuildNeeded() && journal.begin(moduleKey, ReleaseStep.VERIFY)) {
+            verify(groupId, artifactId, path);
+            journal.complete(moduleKey, ReleaseStep.VERIFY);
+        }
+        if (journal.begin(moduleKey, ReleaseStep.PREPARE)) {
+            createMavenInvoker(path, groupId, artifactId).execute("release:prepare --batch-mode -DautoVersionSubmodules=true"
+                    + versionPlan.getPrepareOptions(groupId, artifactId) + commitBatch.getPrepareOptions());
+            journal.complete(moduleKey, ReleaseStep.PREPARE);
+        }
+        if (journal.begin(moduleKey, ReleaseStep.PERFORM)) {
+            exitCode = createMavenInvoker(path, groupId, artifactId).execute("release:perform --batch-mode"
+                    + commitBatch.getPerformOptions() + releaseMode.getPerformOptions()
+                    + (deployPipeline != null ? deployPipeline.getPerformOptions() : ""));
+            journal.complete(moduleKey, ReleaseStep.PERFORM);
+        }
+        if (deployPipeline != null) {
+            deployPipeline.deploy(moduleKey, groupId, artifactId, configUtil.getMavenProjectFromPath(path),
+                    config.getProjectBase(), path);
+        }
+        commitBatch.releaseMade();
         log.info(moduleName + " release exited with code " + exitCode);
-        releasedModuleTracker.addReleasedModule(parentArtifact.getGroupId(), parentArtifact.getArtifactId(), parentArtifact.getVersion());
+        releasedModuleTracker.addReleasedModule(groupId, artifactId, parentArtifact.getVersion(),
+                versionPlan.getReleaseVersion(groupId, artifactId));
     }
 
     /**
-     * Update all child poms. Commit the child poms.
+     * Build and test the parent, unless exactly the same content was verified before. The parent is released in the
+     * current working copy, which the mojo updated before the release started, so the content that is hashed and built
+     * is the content that release:prepare tags.
      */
-    private void updateChildProjectsWithLatestParentVersion() throws IOException, MojoFailureException {
-        for (ProjectModule module : config.getModules()) {
+    private void verify(String groupId, String artifactId, String path) throws MojoFailureException {
+        final String moduleKey = ConfigUtil.createProjectIdentifier(groupId, artifactId);
+        String cacheKey = null;
+        if (verificationCache != null) {
+            final MavenProject parentProject = configUtil.getMavenProjectFromPath(path);
+            cacheKey = verificationCache.computeKey(new File(config.getProjectBase(), path),
+                    Collections.singletonList(parentProject), Collections.<String, String>emptyMap());
+            if (cacheKey != null && verificationCache.isVerified(cacheKey)) {
+                log.info(moduleKey + " was verified before with the same content, skipping clean install");
+                return;
+            }
+        }
+        createMavenInvoker(path, groupId, artifactId).execute("clean install");
+        if (cacheKey != null) {
+            verificationCache.markVerified(cacheKey, moduleKey);
+        }
+    }
+
+    private Invoker createMavenInvoker(String path, String groupId, String artifactId) {
+        return processFactory.createMavenInvoker(config.getProjectBase(), path, groupId, artifactId);
+    }
+
+    /**
+     * Update all child poms, at the same time. Commit the child poms.
+     */
+    private void updateChildProjectsWithLatestParentVersion(Artifact parentArtifact) throws IOException, MojoFailureException {
+        final ReleaseRecord parentRelease = releasedModuleTracker.getReleaseRecord(parentArtifact.getGroupId(), parentArtifact.getArtifactId());
+        final Map<String, PomUpdateFanOut.PomUpdate> updates = new LinkedHashMap<String, PomUpdateFanOut.PomUpdate>();
+        for (final ProjectModule module : config.getModules()) {
             if (module.getParent() == null) {
-                MavenInvoker mavenInvoker = processFactory.createMavenInvoker(configUtil.getFullPathFromBase(module, config.getBasedir()));
-
-                // TODO: Add the version number of the parent to the commit message
-                int exitCode =
-                        mavenInvoker
-                                .execute("versions:update-parent versions:commit scm:checkin -Dmessage=\"Update_parent_to_latest_release_version\"");
-                log.info("Update parent for " + module.getGroupId() + ":" + module.getArtifactId()
-                        + ". Exit code=" + exitCode);
+                updates.put(ConfigUtil.createProjectIdentifier(module), new PomUpdateFanOut.PomUpdate() {
+                    public void run() throws MojoFailureException {
+                        updateChildProject(module, parentRelease);
+                    }
+                });
             }
         }
+        pomUpdateFanOut.run(updates);
+        commitBatch.commit();
+    }
+
+    private void updateChildProject(ProjectModule module, ReleaseRecord parentRelease) throws MojoFailureException {
+        final String subject = ConfigUtil.createProjectIdentifier(module) + "<-parent";
+
+        boolean changed;
+        if (journal.begin(subject, ReleaseStep.UPDATE_DEPENDENTS)) {
+            changed = pomVersionRewriter.updateParentVersion(module.getRelatedMavenProject().getFile(), module.getRelatedMavenProject(),
+                    parentRelease.getGroupId(), parentRelease.getArtifactId(), parentRelease.getNewVersion());
+            journal.complete(subject, ReleaseStep.UPDATE_DEPENDENTS, String.valueOf(changed));
+        } else {
+            changed = Boolean.parseBoolean(journal.getDetail(subject, ReleaseStep.UPDATE_DEPENDENTS));
+        }
+        if (changed && journal.begin(subject, ReleaseStep.COMMIT)) {
+            commitBatch.add(subject, module.getRelatedMavenProject().getFile(), "Update_parent_to_" + parentRelease.getNewVersion());
+        }
+        log.info("Update parent for " + module.getGroupId() + ":" + module.getArtifactId() + ". Changed=" + changed);
     }
 }
@@ -0,0 +1,72 @@
+package org.jkva;
+
+import java.util.List;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import static org.jkva.ConfigUtil.createProjectIdentifier;
+
+/**
+ * Shows what cascading-release would release, without releasing anything: the modules in release order, the
+ * estimated duration of every module, the total duration and the critical path. The estimates are based on the
+ * durations of earlier releases.
+ */
+@Mojo(name = "plan", requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME, inheritByDefault = false, aggregator = true)
+public class PlanMojo extends AbstractCascadingReleaseMojo {
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        readConfiguration();
+
+        final TimingHistory timingHistory = TimingHistory.open(getLog(), timingHistoryFile);
+        final MavenProject releasableProject = configUtil.getMavenProjectFromPath(config.getDistPath());
+        final ProjectModule distModule = configUtil.getProjectModuleFromMavenProject(releasableProject);
+        final ReleaseGraph graph = new ReleaseGraphBuilder(config, getLog(), configUtil).createReleaseGraph(distModule);
+        final ReleaseEstimate estimate = new ReleaseEstimate(graph, timingHistory, getReleaseMode(), workers);
+
+        getLog().info("");
+        getLog().info("Release plan for " + createProjectIdentifier(distModule) + " (" + graph.size() + " modules, "
+                + workers + " workers)");
+        final long parentDuration = logParent(timingHistory);
+        int i = 1;
+        for (ProjectModule module : graph.getTopologicalOrder()) {
+            getLog().info(String.format(" %3d. %-60s %s%s", i++, createProjectIdentifier(module),
+                    ReleaseEstimate.formatDuration(estimate.getEstimate(module)),
+                    estimate.isKnown(module) ? "" : " (never released, average assumed)"));
+        }
+
+        final List<ProjectModule> criticalPath = estimate.getCriticalPath();
+        getLog().info("");
+        getLog().info("Total ETA: " + ReleaseEstimate.formatDuration(parentDuration + estimate.getTotalDuration()));
+        getLog().info("Critical path (" + ReleaseEstimate.formatDuration(estimate.getDuration(criticalPath)) + "):");
+        for (ProjectModule module : criticalPath) {
+            getLog().info(String.format("  -> %-60s %s", createProjectIdentifier(module),
+                    ReleaseEstimate.formatDuration(estimate.getEstimate(module))));
+        }
+
+        if (approvalFile != null) {
+            createReleaseApproval(graph).write(approvalFile);
+        }
+    }
+
+    /**
+     * The parent is released before all other modules, when it is a SNAPSHOT.
+     *
+     * @return the estimated duration of the parent release
+     */
+    private long logParent(TimingHistory timingHistory) throws MojoFailureException {
+        final Artifact parentArtifact = project.getParentArtifact();
+        if (config.getParentPath() == null || parentArtifact == null || !parentArtifact.isSnapshot()) {
+            return 0;
+        }
+        final String parentKey = createProjectIdentifier(parentArtifact.getGroupId(), parentArtifact.getArtifactId());
+        final Long duration = ReleaseEstimate.estimate(timingHistory, parentKey, getReleaseMode());
+        getLog().info(String.format("   0. %-60s %s", parentKey + " (parent)",
+                duration != null ? ReleaseEstimate.formatDuration(duration) : "unknown (never released)"));
+        return duration != null ? duration : 0;
+    }
+}
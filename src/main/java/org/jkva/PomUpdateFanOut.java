@@ -0,0 +1,100 @@
+package org.jkva;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Updates the POMs that depend on a released module at the same time, with a bounded number of threads. The updates
+ * are independent: every POM is updated by one update only. An update that fails doesn't stop the others, all
+ * failures are reported together when all updates are done.
+ */
+public class PomUpdateFanOut {
+
+    public interface PomUpdate {
+        void run() throws MojoFailureException;
+    }
+
+    private final Log log;
+    private final int threads;
+
+    /**
+     * @param threads the maximum number of POMs that are updated at the same time
+     */
+    public PomUpdateFanOut(Log log, int threads) throws MojoFailureException {
+        if (threads < 1) {
+            throw new MojoFailureException("The number of update threads must be at least 1, but was: " + threads);
+        }
+        this.log = log;
+        this.threads = threads;
+    }
+
+    /**
+     * @param updates the updates by the project they update
+     */
+    public void run(Map<String, PomUpdate> updates) throws MojoFailureException {
+        final Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+        if (threads == 1 || updates.size() <= 1) {
+            for (Map.Entry<String, PomUpdate> update : updates.entrySet()) {
+                try {
+                    update.getValue().run();
+                } catch (MojoFailureException e) {
+                    failures.put(update.getKey(), e);
+                }
+            }
+        } else {
+            runConcurrently(updates, failures);
+        }
+
+        if (!failures.isEmpty()) {
+            for (Map.Entry<String, Throwable> failure : failures.entrySet()) {
+                log.error("Updating " + failure.getKey() + " failed: " + failure.getValue().getMessage());
+            }
+            throw new MojoFailureException("Updating " + failures.size() + " of " + updates.size()
+                    + " dependent POMs failed: " + failures.keySet(), failures.values().iterator().next());
+        }
+    }
+
+    private void runConcurrently(Map<String, PomUpdate> updates, Map<String, Throwable> failures)
+            throws MojoFailureException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, updates.size()),
+                new ThreadFactoryBuilder().setNameFormat("pom-update-%d").setDaemon(true).build());
+        try {
+            final List<String> subjects = new ArrayList<String>();
+            final List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (Map.Entry<String, PomUpdate> update : updates.entrySet()) {
+                final PomUpdate pomUpdate = update.getValue();
+                subjects.add(update.getKey());
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws MojoFailureException {
+                        pomUpdate.run();
+                        return null;
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    failures.put(subjects.get(i), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoFailureException("Interrupted while updating dependent POMs", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
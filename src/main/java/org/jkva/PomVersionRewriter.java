@@ -0,0 +1,366 @@
+package org.jkva;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.artifact.versioning.ComparableVersion;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Changes versions in POM files directly, instead of forking Maven to run the versions-maven-plugin. Only the version
+ * values are replaced, everything else (formatting, comments, element order) is left untouched.
+ * <p/>
+ * Elements are found by their path from the root, on a copy of the POM in which comments are blanked out, so commented
+ * out dependencies are never changed. Positions in that copy are the same as in the original POM. Only the parent, the
+ * dependencies and dependency management of the project and its own properties are changed; dependencies of plugins
+ * and the dependencies and properties of profiles are left alone.
+ */
+public class PomVersionRewriter {
+
+    private static final Pattern COMMENT = Pattern.compile("<!--.*?-->", Pattern.DOTALL);
+    private static final Pattern TAG = Pattern.compile("<(/?)([\\w.:-]+)[^>]*?(/?)>");
+    private static final Pattern PROPERTY_REFERENCE = Pattern.compile("\\$\\{(.+)\\}");
+
+    private static final String PARENT = "project/parent";
+    private static final String[] DEPENDENCIES = {
+            "project/dependencies/dependency", "project/dependencyManagement/dependencies/dependency"};
+    private static final String PROPERTIES = "project/properties";
+
+    private final Log log;
+
+    public PomVersionRewriter(Log log) {
+        this.log = log;
+    }
+
+    /**
+     * Set the version of the parent, if the parent of the POM is the given artifact.
+     *
+     * @param project the project the POM belongs to
+     * @return true when the POM was changed
+     */
+    public boolean updateParentVersion(File pomFile, MavenProject project, String groupId, String artifactId,
+                                       String version) throws MojoFailureException {
+        final Pom pom = new Pom(pomFile);
+        boolean found = false;
+        for (Element parent : pom.getElements(PARENT)) {
+            if (groupId.equals(pom.getChildValue(parent, "groupId"))
+                    && artifactId.equals(pom.getChildValue(parent, "artifactId"))) {
+                found = pom.setChildValue(parent, "version", version);
+            }
+        }
+        final Parent declared = getDeclaredModel(project).getParent();
+        if (!found && declared != null && groupId.equals(declared.getGroupId())
+                && artifactId.equals(declared.getArtifactId())) {
+            log.warn("The parent " + groupId + ":" + artifactId + " is not found in " + pomFile
+                    + ", its version is not updated");
+        }
+        return pom.save();
+    }
+
+    /**
+     * Set the versions of all dependencies on the released artifacts. When the version of such a dependency refers to
+     * a property, the property in this POM is changed. Like versions:use-latest-versions, versions are never
+     * downgraded: only the SNAPSHOT a module was released from and versions older than the release are replaced.
+     *
+     * @param project           the project the POM belongs to, used for resolving groupId expressions
+     * @param releasedVersions  the released version by groupId:artifactId
+     * @param previousVersions  the version the artifacts were released from by groupId:artifactId, like 1.0-SNAPSHOT
+     * @param versionProperties properties in this POM that are used as the version of released artifacts in other
+     *                          POMs, with their new value
+     * @return true when the POM was changed
+     */
+    public boolean updateDependencyVersions(File pomFile, MavenProject project, Map<String, String> releasedVersions,
+                                            Map<String, String> previousVersions,
+                                            Map<String, String> versionProperties) throws MojoFailureException {
+        final Pom pom = new Pom(pomFile);
+        final Map<String, String> propertyVersions = new LinkedHashMap<String, String>(versionProperties);
+        final Map<String, String> propertyPreviousVersions = new HashMap<String, String>();
+        final Set<String> notFound = getDeclaredDependencies(project, releasedVersions.keySet());
+
+        for (String path : DEPENDENCIES) {
+            for (Element dependency : pom.getElements(path)) {
+                final String groupId = resolve(pom.getChildValue(dependency, "groupId"), project);
+                final String key = groupId + ":" + pom.getChildValue(dependency, "artifactId");
+                final String releasedVersion = releasedVersions.get(key);
+                final String version = pom.getChildValue(dependency, "version");
+                if (releasedVersion == null || version == null) {
+                    continue;
+                }
+                notFound.remove(key);
+
+                final Matcher propertyReference = PROPERTY_REFERENCE.matcher(version);
+                if (propertyReference.matches()) {
+                    propertyVersions.put(propertyReference.group(1), releasedVersion);
+                    propertyPreviousVersions.put(propertyReference.group(1), previousVersions.get(key));
+                } else if (isUpgrade(pomFile, key, version, releasedVersion, previousVersions.get(key))) {
+                    pom.setChildValue(dependency, "version", releasedVersion);
+                }
+            }
+        }
+        if (!notFound.isEmpty()) {
+            log.warn("The dependencies on " + notFound + " are not found in " + pomFile + ", they are not updated");
+        }
+
+        if (!propertyVersions.isEmpty()) {
+            final Set<String> notDefined = new LinkedHashSet<String>(propertyVersions.keySet());
+            for (Element properties : pom.getElements(PROPERTIES)) {
+                for (Map.Entry<String, String> entry : propertyVersions.entrySet()) {
+                    final String value = pom.getChildValue(properties, entry.getKey());
+                    if (value == null) {
+                        continue;
+                    }
+                    notDefined.remove(entry.getKey());
+                    if (isUpgrade(pomFile, "property " + entry.getKey(), value, entry.getValue(),
+                            propertyPreviousVersions.get(entry.getKey()))) {
+                        pom.setChildValue(properties, entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            // Properties that are defined in a parent are changed in the parent
+            notDefined.retainAll(getDeclaredModel(project).getProperties().stringPropertyNames());
+            if (!notDefined.isEmpty()) {
+                log.warn("Version properties " + notDefined + " are not found in " + pomFile + ", they are not updated");
+            }
+        }
+        return pom.save();
+    }
+
+    /**
+     * @param previousVersion the version the artifact was released from, or null when not known
+     * @return true when the current version is the version the artifact was released from, or older than the release
+     */
+    private boolean isUpgrade(File pomFile, String subject, String currentVersion, String releasedVersion,
+                              String previousVersion) {
+        if (currentVersion.equals(releasedVersion) || currentVersion.equals(previousVersion)
+                || new ComparableVersion(currentVersion).compareTo(new ComparableVersion(releasedVersion)) < 0) {
+            return true;
+        }
+        log.info("Keeping version " + currentVersion + " of " + subject + " in " + pomFile + ", it is newer than the "
+                + "released version " + releasedVersion);
+        return false;
+    }
+
+    /**
+     * @return the released artifacts the POM declares a dependency on with a version, which must be found in the POM
+     */
+    private Set<String> getDeclaredDependencies(MavenProject project, Set<String> released) {
+        final Model model = getDeclaredModel(project);
+        final List<Dependency> declared = new ArrayList<Dependency>(model.getDependencies());
+        if (model.getDependencyManagement() != null) {
+            declared.addAll(model.getDependencyManagement().getDependencies());
+        }
+        final Set<String> ret = new LinkedHashSet<String>();
+        for (Dependency dependency : declared) {
+            final String key = resolve(dependency.getGroupId(), project) + ":" + dependency.getArtifactId();
+            if (dependency.getVersion() != null && released.contains(key)) {
+                ret.add(key);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * The model as it is written in the POM, without inherited elements.
+     */
+    private static Model getDeclaredModel(MavenProject project) {
+        return project.getOriginalModel() != null ? project.getOriginalModel() : project.getModel();
+    }
+
+    private String resolve(String value, MavenProject project) {
+        if (value == null) {
+            return null;
+        }
+        final Matcher propertyReference = PROPERTY_REFERENCE.matcher(value);
+        if (!propertyReference.matches()) {
+            return value;
+        }
+        final String property = propertyReference.group(1);
+        if (property.equals("project.groupId") || property.equals("pom.groupId") || property.equals("groupId")) {
+            return project.getGroupId();
+        }
+        if (property.equals("project.parent.groupId") && project.getParent() != null) {
+            return project.getParent().getGroupId();
+        }
+        return project.getProperties().getProperty(property, value);
+    }
+
+    private static class Pom {
+        private final File file;
+        private final String original;
+        private final String masked;
+        private final List<Element> elements;
+        private final TreeMap<Integer, Replacement> replacements = new TreeMap<Integer, Replacement>();
+
+        private Pom(File file) throws MojoFailureException {
+            this.file = file;
+            try {
+                this.original = Files.toString(file, Charsets.UTF_8);
+            } catch (IOException e) {
+                throw new MojoFailureException("Error reading POM: " + file, e);
+            }
+            this.masked = mask(original);
+            this.elements = parse(masked);
+        }
+
+        private static String mask(String xml) {
+            final StringBuilder sb = new StringBuilder(xml);
+            final Matcher comment = COMMENT.matcher(xml);
+            while (comment.find()) {
+                for (int i = comment.start(); i < comment.end(); i++) {
+                    sb.setCharAt(i, ' ');
+                }
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Find all elements with a content, in document order. Tags may contain whitespace and attributes, like
+         * <code>&lt;dependency &gt;</code>.
+         */
+        private static List<Element> parse(String xml) {
+            final List<Element> ret = new ArrayList<Element>();
+            final LinkedList<Element> open = new LinkedList<Element>();
+            final Matcher tag = TAG.matcher(xml);
+            while (tag.find()) {
+                final String name = tag.group(2);
+                if (tag.group(1).isEmpty()) {
+                    if (tag.group(3).isEmpty()) {
+                        final String path = open.isEmpty() ? name : open.getLast().path + "/" + name;
+                        final Element element = new Element(path, tag.end());
+                        open.add(element);
+                        ret.add(element);
+                    }
+                    continue;
+                }
+                // Close the element, and the elements in it that were never closed
+                while (!open.isEmpty()) {
+                    final Element element = open.removeLast();
+                    element.end = tag.start();
+                    if (element.path.equals(name) || element.path.endsWith("/" + name)) {
+                        break;
+                    }
+                }
+            }
+            for (Element element : open) {
+                element.end = xml.length();
+            }
+            return ret;
+        }
+
+        private List<Element> getElements(String path) {
+            final List<Element> ret = new ArrayList<Element>();
+            for (Element element : elements) {
+                if (element.path.equals(path)) {
+                    ret.add(element);
+                }
+            }
+            return ret;
+        }
+
+        /**
+         * Find a direct child of the element, so the groupId and artifactId of exclusions are never taken for the
+         * ones of the dependency.
+         */
+        private Element getChild(Element parent, String name) {
+            final String path = parent.path + "/" + name;
+            for (Element element : elements) {
+                if (element.start >= parent.start && element.end <= parent.end && element.path.equals(path)) {
+                    return element;
+                }
+            }
+            return null;
+        }
+
+        private String getChildValue(Element parent, String name) {
+            final Element child = getChild(parent, name);
+            return child != null ? masked.substring(child.start, child.end).trim() : null;
+        }
+
+        /**
+         * @return true when the element was found
+         */
+        private boolean setChildValue(Element parent, String name, String value) {
+            final Element child = getChild(parent, name);
+            if (child == null) {
+                return false;
+            }
+            int start = child.start;
+            int end = child.end;
+            while (start < end && Character.isWhitespace(masked.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(masked.charAt(end - 1))) {
+                end--;
+            }
+            if (!masked.substring(start, end).equals(value)) {
+                replacements.put(start, new Replacement(start, end, value));
+            }
+            return true;
+        }
+
+        /**
+         * @return true when the POM was changed
+         */
+        private boolean save() throws MojoFailureException {
+            if (replacements.isEmpty()) {
+                return false;
+            }
+            // Replace from the end of the file to the start, so the positions of the other replacements stay valid
+            final StringBuilder content = new StringBuilder(original);
+            for (Replacement replacement : replacements.descendingMap().values()) {
+                content.replace(replacement.start, replacement.end, replacement.value);
+            }
+            try {
+                Files.write(content.toString(), file, Charsets.UTF_8);
+            } catch (IOException e) {
+                throw new MojoFailureException("Error writing POM: " + file, e);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * An element and the position of its content.
+     */
+    private static class Element {
+        private final String path;
+        private final int start;
+        private int end;
+
+        private Element(String path, int start) {
+            this.path = path;
+            this.start = start;
+        }
+    }
+
+    private static class Replacement {
+        private final int start;
+        private final int end;
+        private final String value;
+
+        private Replacement(int start, int end, String value) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package org.jkva;
 
+import org.apache.maven.Maven;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.LegacySupport;
 import org.apache.maven.plugin.logging.Log;
 
 import java.io.File;
@@ -11,16 +14,75 @@ public class ProcessFactory {
 
     private final Log log;
     private final File projectBase;
+    private final Maven maven;
+    private final LegacySupport legacySupport;
+    private final MavenSession session;
+    private final ProcessSupervisor supervisor;
+    private final ReleaseMetrics metrics;
+    private final ExecutionProfiles profiles;
 
-    public ProcessFactory(Log log, File projectBase) {
+    /**
+     * Create a factory for invokers that fork a new Maven process for every execution.
+     *
+     * @param profiles how the forked builds run, or null to run them as Maven does by default
+     */
+    public ProcessFactory(Log log, File projectBase, ProcessSupervisor supervisor, ReleaseMetrics metrics,
+                          ExecutionProfiles profiles) {
+        this(log, projectBase, supervisor, metrics, profiles, null, null, null);
+    }
+
+    /**
+     * Create a factory for invokers that run Maven inside the current JVM, using the given Maven components. Goals
+     * that still need a separate process (like git) are watched by the supervisor.
+     */
+    public ProcessFactory(Log log, File projectBase, ProcessSupervisor supervisor, ReleaseMetrics metrics,
+                          ExecutionProfiles profiles, Maven maven, LegacySupport legacySupport, MavenSession session) {
         this.log = log;
+        this.supervisor = supervisor;
+        this.metrics = metrics;
+        this.profiles = profiles;
         this.projectBase = projectBase;
+        this.maven = maven;
+        this.legacySupport = legacySupport;
+        this.session = session;
+    }
+
+    public Invoker createMavenInvoker(String relativeWorkingDir) {
+        return createMavenInvoker(projectBase, relativeWorkingDir);
+    }
+
+    public Invoker createMavenInvoker(File workingCopy, String relativeWorkingDir) {
+        return createMavenInvoker(workingCopy, relativeWorkingDir,
+                profiles != null ? profiles.getDefaultProfile() : null);
     }
 
-    public MavenInvoker createMavenInvoker(String relativeWorkingDir) {
-        File workDir = new File(projectBase, relativeWorkingDir);
+    /**
+     * Create an invoker for building a module, with the execution profile of the module.
+     */
+    public Invoker createMavenInvoker(File workingCopy, String relativeWorkingDir, String groupId, String artifactId) {
+        return createMavenInvoker(workingCopy, relativeWorkingDir,
+                profiles != null ? profiles.getProfile(groupId, artifactId) : null);
+    }
+
+    private Invoker createMavenInvoker(File workingCopy, String relativeWorkingDir, ExecutionProfile profile) {
+        File workDir = new File(workingCopy, relativeWorkingDir);
+
+        if (maven != null) {
+            // The builds share this JVM and its settings
+            return new EmbeddedMavenInvoker(this.log, workDir, maven, legacySupport, session, metrics);
+        }
+        return new MavenInvoker(this.log, workDir, true, supervisor, metrics, profile);
+    }
+
+    public ProcessInvoker createGitInvoker(String relativeWorkingDir) {
+        return new GitInvoker(this.log, new File(projectBase, relativeWorkingDir), true, supervisor, metrics);
+    }
 
-        return new MavenInvoker(this.log, workDir, true);
+    /**
+     * Create an invoker that always forks, for goals of which the output needs to be captured.
+     */
+    public ProcessInvoker createForkedMavenInvoker(String relativeWorkingDir) {
+        return new MavenInvoker(this.log, new File(projectBase, relativeWorkingDir), true, supervisor, metrics, null);
     }
 
 }
@@ -0,0 +1,151 @@
+package org.jkva;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Invoker that runs the goals in a separate process. The output is passed to the registered
+ * {@link OutputListener}s while the process runs, only the last lines are kept for error reporting. The process is
+ * watched by a {@link ProcessSupervisor}, which kills it when it runs longer than the timeout for its goals.
+ *
+ * @author Jan-Kees van Andel - @jankeesvanandel
+ */
+public abstract class ProcessInvoker extends Invoker {
+    private static final int TAIL_LINES = 200;
+
+    private final boolean redirectLogs;
+    private final ProcessSupervisor supervisor;
+    private final OutputTail tail = new OutputTail(TAIL_LINES);
+    private final AtomicLong outputBytes = new AtomicLong();
+
+    public ProcessInvoker(Log log, File workDir, boolean redirectLogs, ProcessSupervisor supervisor,
+                          ReleaseMetrics metrics) {
+        super(log, workDir, metrics);
+        this.redirectLogs = redirectLogs;
+        this.supervisor = supervisor;
+    }
+
+    /**
+     * Pass a line to the listeners. Only called by the supervisor thread of the running process.
+     */
+    private void onLine(String line) {
+        tail.onLine(line);
+        outputBytes.addAndGet(line.length() + 1);
+        if (redirectLogs) {
+            getLog().info(line);
+        }
+        for (OutputListener listener : outputListeners) {
+            listener.onLine(line);
+        }
+    }
+
+    protected List<String> getProcessArguments(String goals, String exec) {
+        List<String> goalsSplitted = splitArguments(goals);
+        List<String> goalsList = new ArrayList<String>(goalsSplitted.size() + 1);
+        try {
+            goalsList.add(new File(exec).getCanonicalPath());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        goalsList.addAll(goalsSplitted);
+        getLog().info(" - Goals: " + goalsList);
+        return goalsList;
+    }
+
+    /**
+     * Start the goals without waiting for them. Cancelling the returned future kills the process.
+     *
+     * @return the future exit code
+     */
+    public ListenableFuture<Integer> start(final String goals) throws MojoFailureException {
+        try {
+            ProcessBuilder processBuilder = new ProcessBuilder();
+            processBuilder.directory(workDir);
+            processBuilder.redirectErrorStream(true);
+
+            final long startTime = System.currentTimeMillis();
+            Process process = doExecute(goals, processBuilder);
+            tail.clear();
+            outputBytes.set(0);
+            final long timeoutMinutes = supervisor.getTimeoutMinutes(splitArguments(goals));
+            final ListenableFuture<Integer> exitCode = supervisor.supervise(process, "[" + goals + "] in " + workDir,
+                    new OutputListener() {
+                        public void onLine(String line) {
+                            ProcessInvoker.this.onLine(line);
+                        }
+                    }, timeoutMinutes);
+            exitCode.addListener(new Runnable() {
+                public void run() {
+                    recordExecution(goals, System.currentTimeMillis() - startTime, outputBytes.get());
+                }
+            }, MoreExecutors.sameThreadExecutor());
+            return exitCode;
+        } catch (IOException e) {
+            throw new MojoFailureException(ERR_MSG + "IOException. Check the logs for details", e);
+        }
+    }
+
+    @Override
+    public int execute(String goals) throws MojoFailureException {
+        return waitFor(start(goals));
+    }
+
+    /**
+     * Wait for a process started with {@link #start(String)}.
+     *
+     * @throws MojoFailureException when the process failed or timed out
+     */
+    public int waitFor(ListenableFuture<Integer> future) throws MojoFailureException {
+        int exitCode;
+        try {
+            exitCode = future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new MojoFailureException(ERR_MSG + "InterruptedException. Check the logs for details", e);
+        } catch (CancellationException e) {
+            throw new MojoFailureException(ERR_MSG + "Cancelled", e);
+        } catch (ExecutionException e) {
+            logTail();
+            if (e.getCause() instanceof TimeoutException) {
+                throw new MojoFailureException(ERR_MSG + e.getCause().getMessage(), e.getCause());
+            }
+            throw new MojoFailureException(ERR_MSG + e.getCause(), e.getCause());
+        }
+
+        if (exitCode != 0) {
+            logTail();
+            throw new MojoFailureException(ERR_MSG + "Exit code=" + exitCode);
+        } else {
+            return exitCode;
+        }
+    }
+
+    private void logTail() {
+        if (!redirectLogs) {
+            for (String line : tail.getLines()) {
+                getLog().error(line);
+            }
+        }
+    }
+
+    protected abstract Process doExecute(String arguments, ProcessBuilder processBuilder) throws IOException;
+
+    @Override
+    public ImmutableList<String> getOutput() {
+        return tail.getLines();
+    }
+}
@@ -0,0 +1,200 @@
+package org.jkva;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Watches forked processes. The output of every process (stdout and stderr merged) is read by a thread from a pool,
+ * which also waits for the process to end, so a fork costs one pooled thread instead of three. Completion is reported
+ * through a future per process.
+ * <p/>
+ * Reading the output blocks, so a pump thread is taken for the whole life of a fork. The pool has a fixed number of
+ * threads, sized to the forks that run at the same time. A fork that starts while all pumps are busy waits for one:
+ * its output stays in the pipe, which blocks the fork when it is full, until another fork ended. Forks never wait for
+ * each other, so that only delays them.
+ * <p/>
+ * Processes that run longer than the timeout for their goals are killed, together with all processes they started
+ * (like the forks of release:perform). The same happens when the future is cancelled.
+ */
+public class ProcessSupervisor {
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("process-timer").setDaemon(true).build());
+
+    private final Log log;
+    private final ThreadPoolExecutor pumps;
+    private final long defaultTimeoutMinutes;
+    private final Map<String, Long> goalTimeoutMinutes;
+
+    /**
+     * @param concurrentProcesses   the number of processes that run at the same time, the number of pump threads
+     * @param defaultTimeoutMinutes the timeout for goals without a timeout of their own, 0 for no timeout
+     * @param goalTimeoutMinutes    the timeout per goal, like release:perform
+     */
+    public ProcessSupervisor(Log log, int concurrentProcesses, long defaultTimeoutMinutes,
+                             Map<String, Long> goalTimeoutMinutes) {
+        this.log = log;
+        final int threads = Math.max(1, concurrentProcesses);
+        this.pumps = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setNameFormat("process-pump-%d").setDaemon(true).build());
+        // Idle pumps end, like the threads of a cached pool
+        this.pumps.allowCoreThreadTimeOut(true);
+        this.defaultTimeoutMinutes = defaultTimeoutMinutes;
+        this.goalTimeoutMinutes = goalTimeoutMinutes;
+    }
+
+    public ProcessSupervisor(Log log) {
+        this(log, 1, 0, Collections.<String, Long>emptyMap());
+    }
+
+    /**
+     * Parse timeouts in the format <code>goal=minutes,goal=minutes</code>.
+     */
+    public static Map<String, Long> parseGoalTimeouts(String goalTimeouts) throws MojoFailureException {
+        final Map<String, Long> ret = new HashMap<String, Long>();
+        if (Strings.isNullOrEmpty(goalTimeouts)) {
+            return ret;
+        }
+        try {
+            final Map<String, String> values = Splitter.on(',').trimResults().omitEmptyStrings()
+                    .withKeyValueSeparator('=').split(goalTimeouts);
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                ret.put(entry.getKey().trim(), Long.parseLong(entry.getValue().trim()));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new MojoFailureException("Invalid goal timeouts [" + goalTimeouts + "], use goal=minutes,goal=minutes", e);
+        }
+        return ret;
+    }
+
+    /**
+     * @return the timeout in minutes for the given goals and options: the longest timeout of all goals, or the
+     * default timeout when none of the goals has a timeout of its own. 0 means no timeout
+     */
+    public long getTimeoutMinutes(List<String> arguments) {
+        Long timeout = null;
+        for (String argument : arguments) {
+            final Long goalTimeout = goalTimeoutMinutes.get(argument);
+            if (goalTimeout == null) {
+                continue;
+            }
+            if (goalTimeout == 0) {
+                return 0;
+            }
+            if (timeout == null || goalTimeout > timeout) {
+                timeout = goalTimeout;
+            }
+        }
+        return timeout != null ? timeout : defaultTimeoutMinutes;
+    }
+
+    /**
+     * Start watching a process. The process must have been started with a merged error stream.
+     *
+     * @param listener       receives every line of output
+     * @param timeoutMinutes 0 for no timeout
+     * @return the future exit code. Fails with a {@link TimeoutException} when the process took too long
+     */
+    public ListenableFuture<Integer> supervise(final Process process, final String description,
+                                              final OutputListener listener, final long timeoutMinutes) {
+        final SettableFuture<Integer> exitCode = SettableFuture.create();
+
+        if (timeoutMinutes > 0) {
+            final ScheduledFuture<?> timeout = TIMER.schedule(new Runnable() {
+                public void run() {
+                    if (exitCode.setException(new TimeoutException(description + " did not finish within "
+                            + timeoutMinutes + " minutes"))) {
+                        log.error(description + " timed out after " + timeoutMinutes + " minutes, killing it");
+                        destroyProcessTree(process);
+                    }
+                }
+            }, timeoutMinutes, TimeUnit.MINUTES);
+            exitCode.addListener(new Runnable() {
+                public void run() {
+                    timeout.cancel(false);
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+        exitCode.addListener(new Runnable() {
+            public void run() {
+                if (exitCode.isCancelled()) {
+                    log.warn(description + " was cancelled, killing it");
+                    destroyProcessTree(process);
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+
+        pumps.execute(new Runnable() {
+            public void run() {
+                try {
+                    final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        listener.onLine(line);
+                    }
+                    exitCode.set(process.waitFor());
+                } catch (IOException e) {
+                    if (!exitCode.isDone()) {
+                        log.debug("Error reading the output of " + description, e);
+                        try {
+                            exitCode.set(process.waitFor());
+                        } catch (InterruptedException ie) {
+                            exitCode.setException(ie);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    exitCode.setException(e);
+                } catch (RuntimeException e) {
+                    exitCode.setException(e);
+                    destroyProcessTree(process);
+                }
+            }
+        });
+        return exitCode;
+    }
+
+    /**
+     * Kill the process and all of its descendants. ProcessHandle is only available since Java 9, so it is used
+     * through reflection. On older JVMs only the process itself is killed.
+     */
+    static void destroyProcessTree(Process process) {
+        try {
+            final Class<?> processHandleClass = Class.forName("java.lang.ProcessHandle");
+            final Method destroyForcibly = processHandleClass.getMethod("destroyForcibly");
+            final Object handle = Process.class.getMethod("toHandle").invoke(process);
+            final Object descendants = processHandleClass.getMethod("descendants").invoke(handle);
+            final Iterator<?> iterator = (Iterator<?>) Class.forName("java.util.stream.BaseStream")
+                    .getMethod("iterator").invoke(descendants);
+            while (iterator.hasNext()) {
+                destroyForcibly.invoke(iterator.next());
+            }
+        } catch (Exception e) {
+            // Not available, only kill the process itself
+        }
+        process.destroy();
+    }
+}
@@ -11,9 +11,14 @@ import java.io.File;
 public class PromptUtil {
 
     public static Settings settings;
+    public static ReleaseMetrics metrics;
+
+    static boolean isInteractive() {
+        return settings.isInteractiveMode();
+    }
 
     static String promptWithDefault(String promptMessage, String defaultValue) {
-        if (settings.isInteractiveMode()) {
+        if (isInteractive()) {
             String input = prompt(String.format(promptMessage + " [%s]:", defaultValue));
             if (input.isEmpty()) {
                 input = defaultValue;
@@ -32,6 +37,13 @@ public class PromptUtil {
 
     static String prompt(String message) {
         Console console = System.console();
-        return console.readLine(message);
+        final long startTime = System.currentTimeMillis();
+        try {
+            return console.readLine(message);
+        } finally {
+            if (metrics != null) {
+                metrics.recordPromptWait(System.currentTimeMillis() - startTime);
+            }
+        }
     }
 }
@@ -0,0 +1,107 @@
+package org.jkva;
+
+import java.io.File;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import static org.jkva.ConfigUtil.createProjectIdentifier;
+
+/**
+ * Remembers, per aggregator project, all modules it aggregates (transitively) and the distinct dependencies of the
+ * project and all these modules. Every project is traversed only once, aggregators reuse the entries of their modules.
+ * <p/>
+ * The traversals are made over the projects of the Maven session, which are read once, when the build starts. Rewriting
+ * the POM files during the release doesn't change them, so the cache stays valid for the whole build.
+ */
+public class ReactorTraversalCache {
+
+    private final ModuleRegistry moduleRegistry;
+    private final Map<MavenProject, Entry> entries = new IdentityHashMap<MavenProject, Entry>();
+
+    public ReactorTraversalCache(ModuleRegistry moduleRegistry) {
+        this.moduleRegistry = moduleRegistry;
+    }
+
+    public synchronized List<MavenProject> getAllModules(MavenProject project) throws MojoFailureException {
+        return getEntry(project).modules;
+    }
+
+    public synchronized Set<String> getAllModuleIdentifiers(MavenProject project) throws MojoFailureException {
+        return getEntry(project).moduleIdentifiers;
+    }
+
+    public synchronized List<Dependency> getDependenciesForAllModules(MavenProject project) throws MojoFailureException {
+        return getEntry(project).dependencies;
+    }
+
+    public synchronized void invalidate() {
+        entries.clear();
+    }
+
+    private Entry getEntry(MavenProject project) throws MojoFailureException {
+        Entry entry = entries.get(project);
+        if (entry == null) {
+            entry = createEntry(project);
+            entries.put(project, entry);
+        }
+        return entry;
+    }
+
+    private Entry createEntry(MavenProject project) throws MojoFailureException {
+        final Set<MavenProject> modules = new LinkedHashSet<MavenProject>();
+        final Map<String, Dependency> dependencies = new LinkedHashMap<String, Dependency>();
+        addDependencies(dependencies, project.getDependencies());
+
+        for (String moduleName : project.getModules()) {
+            final File moduleDirectory = new File(project.getFile().getParentFile(), moduleName);
+            final MavenProject moduleProject = moduleRegistry.getProjectInDirectory(moduleDirectory);
+            if (moduleProject == null) {
+                throw new MojoFailureException("Can't find maven project in path: " + moduleDirectory);
+            }
+            final Entry moduleEntry = getEntry(moduleProject);
+            modules.add(moduleProject);
+            modules.addAll(moduleEntry.modules);
+            addDependencies(dependencies, moduleEntry.dependencies);
+        }
+
+        final ImmutableSet.Builder<String> moduleIdentifiers = ImmutableSet.builder();
+        for (MavenProject module : modules) {
+            moduleIdentifiers.add(createProjectIdentifier(module));
+        }
+        return new Entry(ImmutableList.copyOf(modules), moduleIdentifiers.build(),
+                ImmutableList.copyOf(dependencies.values()));
+    }
+
+    private void addDependencies(Map<String, Dependency> dependencies, List<Dependency> toAdd) {
+        for (Dependency dependency : toAdd) {
+            final String key = dependency.getManagementKey() + ":" + dependency.getVersion();
+            if (!dependencies.containsKey(key)) {
+                dependencies.put(key, dependency);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final ImmutableList<MavenProject> modules;
+        private final ImmutableSet<String> moduleIdentifiers;
+        private final ImmutableList<Dependency> dependencies;
+
+        private Entry(ImmutableList<MavenProject> modules, ImmutableSet<String> moduleIdentifiers,
+                      ImmutableList<Dependency> dependencies) {
+            this.modules = modules;
+            this.moduleIdentifiers = moduleIdentifiers;
+            this.dependencies = dependencies;
+        }
+    }
+}
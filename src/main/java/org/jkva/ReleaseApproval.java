@@ -0,0 +1,119 @@
+package org.jkva;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.io.Files;
+
+/**
+ * All decisions of a release, approved once before anything is released: the modules that are released and the
+ * warnings that are accepted. After the approval the release never waits for the console.
+ * <p/>
+ * For unattended runs the plan can be approved with a file, which lists the items of the plan, one per line. The plan
+ * goal writes the file, so the plan can be reviewed before the release runs. A plan is only approved by a file that
+ * contains all of its items; lines starting with # are comments.
+ */
+public class ReleaseApproval {
+
+    private static final String RELEASE = "release ";
+    private static final String ACCEPT = "accept ";
+
+    private final Log log;
+    private final Set<String> items = new LinkedHashSet<String>();
+    private int releases;
+    private boolean approved;
+
+    public ReleaseApproval(Log log) {
+        this.log = log;
+    }
+
+    public void addRelease(String moduleKey) {
+        if (items.add(RELEASE + moduleKey)) {
+            releases++;
+        }
+    }
+
+    public void addWarning(String warning) {
+        items.add(ACCEPT + warning);
+    }
+
+    public List<String> getItems() {
+        return new ArrayList<String>(items);
+    }
+
+    /**
+     * Show the plan and get it approved: by the approval file when there is one, otherwise by asking once. In batch
+     * mode the plan is approved, like the answers to the prompts default to yes.
+     *
+     * @param approvalFile the approval file, or null
+     */
+    public void approve(File approvalFile) throws MojoFailureException {
+        log.info("Release plan:");
+        for (String item : items) {
+            log.info("  " + item);
+        }
+
+        if (approvalFile != null) {
+            final List<String> missing = new ArrayList<String>(items);
+            missing.removeAll(readApprovalFile(approvalFile));
+            if (!missing.isEmpty()) {
+                throw new MojoFailureException("The release plan is not approved by " + approvalFile
+                        + ", it doesn't contain: " + Joiner.on(", ").join(missing));
+            }
+            log.info("The release plan is approved by " + approvalFile);
+        } else if (PromptUtil.isInteractive()) {
+            final String input = PromptUtil.promptWithDefault("Release " + releases + " modules as planned above?", "y");
+            if (!input.isEmpty() && !input.equalsIgnoreCase("y")) {
+                throw new MojoFailureException("Release aborted by user");
+            }
+        } else {
+            log.info("Running in batch mode, the release plan is approved");
+        }
+        approved = true;
+    }
+
+    /**
+     * @throws MojoFailureException when the module is not part of the approved plan
+     */
+    public void checkApproved(String moduleKey) throws MojoFailureException {
+        if (!approved || !items.contains(RELEASE + moduleKey)) {
+            throw new MojoFailureException(moduleKey + " is not part of the approved release plan. Release aborted");
+        }
+    }
+
+    private static List<String> readApprovalFile(File approvalFile) throws MojoFailureException {
+        try {
+            final List<String> ret = new ArrayList<String>();
+            for (String line : Files.readLines(approvalFile, Charsets.UTF_8)) {
+                if (!line.trim().isEmpty() && !line.trim().startsWith("#")) {
+                    ret.add(line.trim());
+                }
+            }
+            return ret;
+        } catch (IOException e) {
+            throw new MojoFailureException("Can't read the approval file " + approvalFile, e);
+        }
+    }
+
+    public void write(File approvalFile) throws MojoFailureException {
+        final List<String> lines = new ArrayList<String>();
+        lines.add("# Release plan, review it and run the release with -DapprovalFile=" + approvalFile.getName());
+        lines.addAll(items);
+        try {
+            Files.createParentDirs(approvalFile);
+            Files.write(Joiner.on('\n').join(lines) + '\n', approvalFile, Charsets.UTF_8);
+        } catch (IOException e) {
+            throw new MojoFailureException("Can't write the approval file " + approvalFile, e);
+        }
+        log.info("Wrote the release plan to " + approvalFile);
+    }
+}
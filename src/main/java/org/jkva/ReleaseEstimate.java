@@ -0,0 +1,175 @@
+package org.jkva;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+import org.apache.maven.plugin.MojoFailureException;
+
+import static org.jkva.ConfigUtil.createProjectIdentifier;
+
+/**
+ * Estimates how long releasing a {@link ReleaseGraph} takes, based on the {@link TimingHistory}. Modules that were
+ * never released before are assumed to take as long as the average module that was.
+ */
+public class ReleaseEstimate {
+
+    private final ReleaseGraph graph;
+    private final int workers;
+    private final Map<ProjectModule, Long> estimates = new LinkedHashMap<ProjectModule, Long>();
+    private final Map<ProjectModule, Boolean> known = new HashMap<ProjectModule, Boolean>();
+    private final long defaultEstimate;
+
+    public ReleaseEstimate(ReleaseGraph graph, TimingHistory timingHistory, ReleaseMode releaseMode, int workers)
+            throws MojoFailureException {
+        this.graph = graph;
+        this.workers = workers;
+        long knownTotal = 0;
+        int knownCount = 0;
+        for (ProjectModule module : graph.getTopologicalOrder()) {
+            final Long estimate = estimate(timingHistory, createProjectIdentifier(module), releaseMode);
+            known.put(module, estimate != null);
+            if (estimate != null) {
+                estimates.put(module, estimate);
+                knownTotal += estimate;
+                knownCount++;
+            }
+        }
+        defaultEstimate = knownCount > 0 ? knownTotal / knownCount : 0;
+        for (ProjectModule module : graph.getTopologicalOrder()) {
+            if (!known.get(module)) {
+                estimates.put(module, defaultEstimate);
+            }
+        }
+    }
+
+    /**
+     * @return the estimated duration of releasing the module, or null when it was never released before
+     */
+    public static Long estimate(TimingHistory timingHistory, String subject, ReleaseMode releaseMode) {
+        final List<ReleaseStep> steps = new ArrayList<ReleaseStep>();
+        if (releaseMode.isVerifyBuildNeeded()) {
+            steps.add(ReleaseStep.VERIFY);
+        }
+        steps.add(ReleaseStep.PREPARE);
+        steps.add(ReleaseStep.PERFORM);
+
+        long total = 0;
+        for (ReleaseStep step : steps) {
+            final Long estimate = timingHistory.estimate(subject, step);
+            if (estimate == null) {
+                return null;
+            }
+            total += estimate;
+        }
+        return total;
+    }
+
+    public long getEstimate(ProjectModule module) {
+        return estimates.get(module);
+    }
+
+    /**
+     * @return false when the module was never released before, so its estimate is a guess
+     */
+    public boolean isKnown(ProjectModule module) {
+        return known.get(module);
+    }
+
+    /**
+     * @return the longest chain of modules that have to be released one after the other
+     */
+    public List<ProjectModule> getCriticalPath() throws MojoFailureException {
+        final Map<ProjectModule, Long> finish = new HashMap<ProjectModule, Long>();
+        final Map<ProjectModule, ProjectModule> previous = new HashMap<ProjectModule, ProjectModule>();
+        ProjectModule last = null;
+        for (ProjectModule module : graph.getTopologicalOrder()) {
+            long start = 0;
+            for (ProjectModule upstream : graph.getUpstreams(module)) {
+                if (previous.get(module) == null || finish.get(upstream) > start) {
+                    start = finish.get(upstream);
+                    previous.put(module, upstream);
+                }
+            }
+            finish.put(module, start + getEstimate(module));
+            if (last == null || finish.get(module) > finish.get(last)) {
+                last = module;
+            }
+        }
+        final LinkedList<ProjectModule> path = new LinkedList<ProjectModule>();
+        for (ProjectModule module = last; module != null; module = previous.get(module)) {
+            path.addFirst(module);
+        }
+        return path;
+    }
+
+    public long getDuration(List<ProjectModule> modules) {
+        long duration = 0;
+        for (ProjectModule module : modules) {
+            duration += getEstimate(module);
+        }
+        return duration;
+    }
+
+    /**
+     * Simulate the release with the number of workers: a module starts as soon as all of its upstream modules are
+     * released and a worker is free.
+     *
+     * @return the estimated duration of the whole release in milliseconds
+     */
+    public long getTotalDuration() throws MojoFailureException {
+        final Map<ProjectModule, Integer> pendingUpstreams = new HashMap<ProjectModule, Integer>();
+        final Queue<ProjectModule> ready = new LinkedList<ProjectModule>();
+        for (ProjectModule module : graph.getTopologicalOrder()) {
+            pendingUpstreams.put(module, graph.getUpstreams(module).size());
+            if (graph.getUpstreams(module).isEmpty()) {
+                ready.add(module);
+            }
+        }
+        final PriorityQueue<Running> running = new PriorityQueue<Running>();
+        long now = 0;
+        while (!ready.isEmpty() || !running.isEmpty()) {
+            while (!ready.isEmpty() && running.size() < workers) {
+                final ProjectModule module = ready.remove();
+                running.add(new Running(module, now + getEstimate(module)));
+            }
+            final Running done = running.remove();
+            now = done.finish;
+            for (ProjectModule downstream : graph.getDownstreams(done.module)) {
+                final int remaining = pendingUpstreams.get(downstream) - 1;
+                pendingUpstreams.put(downstream, remaining);
+                if (remaining == 0) {
+                    ready.add(downstream);
+                }
+            }
+        }
+        return now;
+    }
+
+    public static String formatDuration(long millis) {
+        final long seconds = millis / 1000;
+        if (seconds >= 3600) {
+            return String.format("%dh %02dm", seconds / 3600, (seconds % 3600) / 60);
+        }
+        return String.format("%dm %02ds", seconds / 60, seconds % 60);
+    }
+
+    private static class Running implements Comparable<Running> {
+        private final ProjectModule module;
+        private final long finish;
+
+        private Running(ProjectModule module, long finish) {
+            this.module = module;
+            this.finish = finish;
+        }
+
+        public int compareTo(Running other) {
+            return finish < other.finish ? -1 : (finish > other.finish ? 1 : 0);
+        }
+    }
+}
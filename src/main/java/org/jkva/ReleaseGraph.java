@@ -0,0 +1,104 @@
+package org.jkva;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoFailureException;
+
+import static org.jkva.ConfigUtil.createProjectIdentifier;
+
+/**
+ * The set of modules that need to be released, together with the order in which they must be released. An edge from
+ * an upstream to a downstream module means that the downstream module can only be released after the upstream module
+ * has been released and the downstream POM has been updated to the released version.
+ */
+public class ReleaseGraph {
+
+    private final Map<ProjectModule, Set<ProjectModule>> upstreams = new LinkedHashMap<ProjectModule, Set<ProjectModule>>();
+    private final Map<ProjectModule, Set<ProjectModule>> downstreams = new LinkedHashMap<ProjectModule, Set<ProjectModule>>();
+
+    public boolean containsModule(ProjectModule module) {
+        return upstreams.containsKey(module);
+    }
+
+    public void addModule(ProjectModule module) {
+        if (!containsModule(module)) {
+            upstreams.put(module, new LinkedHashSet<ProjectModule>());
+            downstreams.put(module, new LinkedHashSet<ProjectModule>());
+        }
+    }
+
+    public void addDependency(ProjectModule upstream, ProjectModule downstream) {
+        addModule(upstream);
+        addModule(downstream);
+        if (!upstream.equals(downstream)) {
+            upstreams.get(downstream).add(upstream);
+            downstreams.get(upstream).add(downstream);
+        }
+    }
+
+    public Set<ProjectModule> getModules() {
+        return Collections.unmodifiableSet(upstreams.keySet());
+    }
+
+    public Set<ProjectModule> getUpstreams(ProjectModule module) {
+        return Collections.unmodifiableSet(upstreams.get(module));
+    }
+
+    public Set<ProjectModule> getDownstreams(ProjectModule module) {
+        return Collections.unmodifiableSet(downstreams.get(module));
+    }
+
+    public int size() {
+        return upstreams.size();
+    }
+
+    /**
+     * Sort the modules so every module comes after all of its upstream modules.
+     */
+    public List<ProjectModule> getTopologicalOrder() throws MojoFailureException {
+        final List<ProjectModule> ret = new ArrayList<ProjectModule>(size());
+        final Set<ProjectModule> visiting = new LinkedHashSet<ProjectModule>();
+        final Set<ProjectModule> visited = new LinkedHashSet<ProjectModule>();
+        for (ProjectModule module : upstreams.keySet()) {
+            visit(module, visiting, visited, ret);
+        }
+        return ret;
+    }
+
+    private void visit(ProjectModule module, Set<ProjectModule> visiting, Set<ProjectModule> visited,
+                       List<ProjectModule> ret) throws MojoFailureException {
+        if (visited.contains(module)) {
+            return;
+        }
+        if (!visiting.add(module)) {
+            throw new MojoFailureException("Cyclic dependency between modules: " + visiting);
+        }
+        for (ProjectModule upstream : upstreams.get(module)) {
+            visit(upstream, visiting, visited, ret);
+        }
+        visiting.remove(module);
+        visited.add(module);
+        ret.add(module);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        for (Map.Entry<ProjectModule, Set<ProjectModule>> entry : upstreams.entrySet()) {
+            sb.append(createProjectIdentifier(entry.getKey())).append(" <- [");
+            String sep = "";
+            for (ProjectModule upstream : entry.getValue()) {
+                sb.append(sep).append(createProjectIdentifier(upstream));
+                sep = ", ";
+            }
+            sb.append("]\n");
+        }
+        return sb.toString();
+    }
+}
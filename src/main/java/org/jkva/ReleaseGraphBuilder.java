@@ -0,0 +1,119 @@
+package org.jkva;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+import static org.jkva.ConfigUtil.createProjectIdentifier;
+
+/**
+ * Determines which modules need to be released, by following the SNAPSHOT dependencies and SNAPSHOT parents of the
+ * module that is released.
+ */
+public class ReleaseGraphBuilder {
+    private final Config config;
+    private final Log log;
+    private final ConfigUtil configUtil;
+
+    public ReleaseGraphBuilder(Config config, Log log, ConfigUtil configUtil) {
+        this.config = config;
+        this.log = log;
+        this.configUtil = configUtil;
+    }
+
+    /**
+     * Determine all modules that need to be released before (and including) the given module, by following the
+     * SNAPSHOT dependencies and SNAPSHOT parents.
+     */
+    public ReleaseGraph createReleaseGraph(ProjectModule module) throws MojoFailureException {
+        final ReleaseGraph graph = new ReleaseGraph();
+        addToReleaseGraph(graph, module);
+        log.info("Release order: ");
+        for (ProjectModule releasableModule : graph.getTopologicalOrder()) {
+            log.info(" + " + createProjectIdentifier(releasableModule));
+        }
+        return graph;
+    }
+
+    private void addToReleaseGraph(ReleaseGraph graph, ProjectModule module) throws MojoFailureException {
+        if (graph.containsModule(module)) {
+            return;
+        }
+        graph.addModule(module);
+
+        final String path = configUtil.getFullPathFromBase(module, config.getBasedir());
+        final MavenProject mavenProject = configUtil.getMavenProjectFromPath(path);
+        log.info("About to release " + mavenProject.toString());
+
+        final MavenProject parentProject = mavenProject.getParent();
+        if (parentProject != null && isSnapshot(parentProject.getVersion())) {
+            final ProjectModule parentModule = configUtil.getProjectModuleFromMavenProject(parentProject);
+            addToReleaseGraph(graph, parentModule);
+            graph.addDependency(parentModule, module);
+        }
+
+        for (ProjectModule releasableModule : determineReleasableModules(mavenProject)) {
+            addToReleaseGraph(graph, releasableModule);
+            graph.addDependency(releasableModule, module);
+        }
+    }
+
+    private Set<ProjectModule> determineReleasableModules(MavenProject mavenProject) throws MojoFailureException {
+        List<Dependency> allModuleDependencies = configUtil.getDependenciesForAllModules(mavenProject);
+
+        //LinkedHashSet to retain the correct order
+        Set<ProjectModule> releasableDependencies = new LinkedHashSet<ProjectModule>();
+        Set<Dependency> nonReleasableDependencies = new LinkedHashSet<Dependency>();
+        for (Dependency dependency : allModuleDependencies) {
+            if (isSnapshot(dependency)) {
+                final ProjectModule module = getReleasableDependency(dependency);
+                if (module != null) {
+                    if (!isMultiModuleBuildInternalDependency(dependency, mavenProject)) {
+                        ProjectModule moduleToRelease;
+                        if (module.getReleasableParent() != null) {
+                            moduleToRelease = module.getReleasableParent();
+                        } else {
+                            moduleToRelease = module;
+                        }
+                        releasableDependencies.add(moduleToRelease);
+                    }
+                } else {
+                    nonReleasableDependencies.add(dependency);
+                }
+            }
+        }
+        log.info("Dependencies that need to be released: ");
+        for (ProjectModule releasableDependency : releasableDependencies) {
+            log.info(" + " + createProjectIdentifier(releasableDependency));
+        }
+        if (!nonReleasableDependencies.isEmpty()) {
+            throw new MojoFailureException("Cannot release because of external SNAPSHOT dependencies: [" + nonReleasableDependencies + "]");
+        }
+
+        return releasableDependencies;
+    }
+
+    private boolean isMultiModuleBuildInternalDependency(Dependency dependency, MavenProject mavenProject) throws MojoFailureException {
+        return configUtil.getAllModuleIdentifiers(mavenProject).contains(createProjectIdentifier(dependency));
+    }
+
+    private ProjectModule getReleasableDependency(Dependency dependency) {
+        final ProjectModule module = configUtil.getModuleForDependency(dependency);
+
+        return module;
+    }
+
+    private boolean isSnapshot(Dependency dependency) {
+        final String version = dependency.getVersion();
+        return isSnapshot(version);
+    }
+
+    private boolean isSnapshot(String version) {
+        return version.contains("-SNAPSHOT");
+    }
+}
@@ -0,0 +1,142 @@
+package org.jkva;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Write-ahead journal of all release steps. Every step is written to disk before it is started and after it is
+ * completed, so a release that died halfway can be resumed from the first step that didn't complete.
+ * <p/>
+ * Every line looks like this: {@code <timestamp> <STARTED|COMPLETED> <subject> <step> <detail>}, separated by tabs.
+ * The subject is the groupId:artifactId of a released module, or {@code dependent<-released} for POM updates.
+ */
+public class ReleaseJournal {
+
+    private static final String STARTED = "STARTED";
+    private static final String COMPLETED = "COMPLETED";
+    private static final String SEPARATOR = "\t";
+    private static final String NEW_LINE = "\n";
+
+    private final Log log;
+    private final File journalFile;
+    private final TimingHistory timingHistory;
+    private final ReleaseMetrics metrics;
+    private final Map<String, String> completedSteps = new HashMap<String, String>();
+    private final Map<String, Long> startTimes = new HashMap<String, Long>();
+
+    private ReleaseJournal(Log log, File journalFile, TimingHistory timingHistory, ReleaseMetrics metrics) {
+        this.log = log;
+        this.journalFile = journalFile;
+        this.timingHistory = timingHistory;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Open the journal. When resuming, the existing journal is read so completed steps are skipped, otherwise the
+     * journal is started from scratch.
+     *
+     * @param timingHistory records the duration of every step that is completed
+     * @param metrics       the duration of every completed step is also part of the metrics of this run
+     */
+    public static ReleaseJournal open(Log log, File journalFile, boolean resume, TimingHistory timingHistory,
+                                      ReleaseMetrics metrics) throws MojoFailureException {
+        final ReleaseJournal journal = new ReleaseJournal(log, journalFile, timingHistory, metrics);
+        try {
+            Files.createParentDirs(journalFile);
+            if (resume) {
+                if (!journalFile.exists()) {
+                    throw new MojoFailureException("Can't resume, there is no release journal: " + journalFile);
+                }
+                journal.replay(Files.toString(journalFile, Charsets.UTF_8));
+                log.info("Resuming release, " + journal.completedSteps.size() + " completed steps found in " + journalFile);
+            } else {
+                Files.write("", journalFile, Charsets.UTF_8);
+            }
+        } catch (IOException e) {
+            throw new MojoFailureException("Error reading release journal: " + journalFile, e);
+        }
+        return journal;
+    }
+
+    private void replay(String content) {
+        final String[] lines = content.split(NEW_LINE, -1);
+        // The last element is either empty, or an incomplete line that's left of a crash while writing it
+        for (int i = 0; i < lines.length - 1; i++) {
+            final String[] fields = lines[i].split(SEPARATOR, 5);
+            if (fields.length == 5 && fields[1].equals(COMPLETED)) {
+                completedSteps.put(createKey(fields[2], ReleaseStep.valueOf(fields[3])), fields[4]);
+            }
+        }
+    }
+
+    /**
+     * Record the start of a step.
+     *
+     * @return false when the step was already completed in the run that is being resumed, so it must be skipped
+     */
+    public synchronized boolean begin(String subject, ReleaseStep step) throws MojoFailureException {
+        if (isCompleted(subject, step)) {
+            log.info("Skipping " + step + " of " + subject + ", it was completed before");
+            return false;
+        }
+        write(STARTED, subject, step, "");
+        startTimes.put(createKey(subject, step), System.currentTimeMillis());
+        return true;
+    }
+
+    public void complete(String subject, ReleaseStep step) throws MojoFailureException {
+        complete(subject, step, "");
+    }
+
+    public synchronized void complete(String subject, ReleaseStep step, String detail) throws MojoFailureException {
+        write(COMPLETED, subject, step, detail);
+        completedSteps.put(createKey(subject, step), detail);
+        final Long startTime = startTimes.remove(createKey(subject, step));
+        if (startTime != null) {
+            final long millis = System.currentTimeMillis() - startTime;
+            timingHistory.record(subject, step, millis);
+            metrics.recordStep(subject, step, millis);
+        }
+    }
+
+    public synchronized boolean isCompleted(String subject, ReleaseStep step) {
+        return completedSteps.containsKey(createKey(subject, step));
+    }
+
+    /**
+     * @return the detail that was recorded when the step was completed, like the released version
+     */
+    public synchronized String getDetail(String subject, ReleaseStep step) {
+        return completedSteps.get(createKey(subject, step));
+    }
+
+    private String createKey(String subject, ReleaseStep step) {
+        return subject + SEPARATOR + step;
+    }
+
+    private void write(String event, String subject, ReleaseStep step, String detail) throws MojoFailureException {
+        final String line = System.currentTimeMillis() + SEPARATOR + event + SEPARATOR + subject + SEPARATOR + step
+                + SEPARATOR + detail + NEW_LINE;
+        try {
+            final FileOutputStream out = new FileOutputStream(journalFile, true);
+            try {
+                out.write(line.getBytes(Charsets.UTF_8));
+                out.flush();
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            throw new MojoFailureException("Error writing release journal: " + journalFile, e);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.jkva;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Metrics of a single run: how long the forks per goal, the SCM operations, the prompts, the planning phases and the
+ * release steps took. Written at the end of the run as a JSON file and as a file for the textfile collector of the
+ * Prometheus node exporter.
+ */
+public class ReleaseMetrics {
+
+    private static final String PREFIX = "cascading_release_";
+
+    private final long startTime = System.currentTimeMillis();
+    private final Map<String, Timer> forks = new LinkedHashMap<String, Timer>();
+    private final Map<String, Timer> scmOperations = new LinkedHashMap<String, Timer>();
+    private final Map<String, Timer> phases = new LinkedHashMap<String, Timer>();
+    private final List<Map<String, Object>> steps = new ArrayList<Map<String, Object>>();
+    private final Timer prompts = new Timer();
+    private long outputBytes;
+
+    /**
+     * @param goal  the goals of the fork, without options
+     * @param scm   whether the fork is an SCM operation
+     */
+    public synchronized void recordFork(String goal, long millis, long bytes, boolean scm) {
+        getTimer(forks, goal).add(millis);
+        if (scm) {
+            getTimer(scmOperations, goal).add(millis);
+        }
+        outputBytes += bytes;
+    }
+
+    /**
+     * Record an SCM operation that ran in-process, without forking.
+     */
+    public synchronized void recordScmOperation(String operation, long millis) {
+        getTimer(scmOperations, operation).add(millis);
+    }
+
+    public synchronized void recordPromptWait(long millis) {
+        prompts.add(millis);
+    }
+
+    /**
+     * Record the duration of a planning phase, like reading the configuration.
+     */
+    public synchronized void recordPhase(String phase, long millis) {
+        getTimer(phases, phase).add(millis);
+    }
+
+    public synchronized void recordStep(String subject, ReleaseStep step, long millis) {
+        final Map<String, Object> ret = new LinkedHashMap<String, Object>();
+        ret.put("subject", subject);
+        ret.put("step", step.name());
+        ret.put("millis", millis);
+        steps.add(ret);
+    }
+
+    private Timer getTimer(Map<String, Timer> timers, String name) {
+        Timer timer = timers.get(name);
+        if (timer == null) {
+            timer = new Timer();
+            timers.put(name, timer);
+        }
+        return timer;
+    }
+
+    public synchronized Map<String, Object> toMap() {
+        final Map<String, Object> ret = new LinkedHashMap<String, Object>();
+        ret.put("startTime", new Date(startTime).toString());
+        ret.put("durationMillis", System.currentTimeMillis() - startTime);
+        ret.put("forkCount", getForkCount());
+        ret.put("outputBytes", outputBytes);
+        ret.put("promptWait", prompts.toMap());
+        ret.put("forks", toMap(forks));
+        ret.put("scmOperations", toMap(scmOperations));
+        ret.put("planning", toMap(phases));
+        ret.put("steps", steps);
+        return ret;
+    }
+
+    private int getForkCount() {
+        int count = 0;
+        for (Timer timer : forks.values()) {
+            count += timer.count;
+        }
+        return count;
+    }
+
+    private Map<String, Object> toMap(Map<String, Timer> timers) {
+        final Map<String, Object> ret = new LinkedHashMap<String, Object>();
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            ret.put(entry.getKey(), entry.getValue().toMap());
+        }
+        return ret;
+    }
+
+    public synchronized String toPrometheus() {
+        final StringBuilder sb = new StringBuilder();
+        appendType(sb, "duration_seconds", "gauge", "Wall time of the release run");
+        appendSample(sb, "duration_seconds", "", System.currentTimeMillis() - startTime);
+        appendType(sb, "forks_total", "counter", "Number of forked builds");
+        sb.append(PREFIX).append("forks_total ").append(getForkCount()).append('\n');
+        appendType(sb, "output_bytes_total", "counter", "Bytes of output of the forked builds");
+        sb.append(PREFIX).append("output_bytes_total ").append(outputBytes).append('\n');
+        appendType(sb, "prompt_wait_seconds", "gauge", "Time spent waiting for answers to prompts");
+        appendSample(sb, "prompt_wait_seconds", "", prompts.totalMillis);
+        appendTimers(sb, "fork", "goal", "Wall time of forked builds per goal", forks);
+        appendTimers(sb, "scm", "operation", "Wall time of SCM operations", scmOperations);
+        appendTimers(sb, "planning", "phase", "Time spent planning the release", phases);
+        appendType(sb, "step_seconds", "gauge", "Duration of a release step of a module");
+        for (Map<String, Object> step : steps) {
+            appendSample(sb, "step_seconds", "{subject=\"" + escape(step.get("subject")) + "\",step=\""
+                    + step.get("step") + "\"}", (Long) step.get("millis"));
+        }
+        return sb.toString();
+    }
+
+    private void appendTimers(StringBuilder sb, String name, String label, String help, Map<String, Timer> timers) {
+        appendType(sb, name + "_seconds_total", "counter", help);
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            appendSample(sb, name + "_seconds_total", "{" + label + "=\"" + escape(entry.getKey()) + "\"}",
+                    entry.getValue().totalMillis);
+        }
+        appendType(sb, name + "_count", "counter", help + ", number of operations");
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            sb.append(PREFIX).append(name).append("_count{").append(label).append("=\"").append(escape(entry.getKey()))
+                    .append("\"} ").append(entry.getValue().count).append('\n');
+        }
+    }
+
+    private void appendType(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private void appendSample(StringBuilder sb, String name, String labels, long millis) {
+        sb.append(PREFIX).append(name).append(labels).append(' ')
+                .append(String.format(Locale.ROOT, "%.3f", millis / 1000.0)).append('\n');
+    }
+
+    private String escape(Object value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Write the metrics. The Prometheus file is replaced atomically, so the node exporter never reads half a file.
+     */
+    public void write(Log log, File jsonFile, File prometheusFile) throws MojoFailureException {
+        try {
+            Files.createParentDirs(jsonFile);
+            Files.write(JsonUtil.toJson(toMap()) + "\n", jsonFile, Charsets.UTF_8);
+
+            Files.createParentDirs(prometheusFile);
+            final File tempFile = new File(prometheusFile.getPath() + ".tmp");
+            Files.write(toPrometheus(), tempFile, Charsets.UTF_8);
+            if (!tempFile.renameTo(prometheusFile)) {
+                Files.move(tempFile, prometheusFile);
+            }
+        } catch (IOException e) {
+            throw new MojoFailureException("Error writing release metrics", e);
+        }
+        log.info("Release metrics written to " + jsonFile + " and " + prometheusFile);
+    }
+
+    private static class Timer {
+        private int count;
+        private long totalMillis;
+        private long maxMillis;
+
+        private void add(long millis) {
+            count++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+        }
+
+        private Map<String, Object> toMap() {
+            final Map<String, Object> ret = new LinkedHashMap<String, Object>();
+            ret.put("count", count);
+            ret.put("totalMillis", totalMillis);
+            ret.put("maxMillis", maxMillis);
+            return ret;
+        }
+    }
+}
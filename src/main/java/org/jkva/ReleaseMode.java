@@ -0,0 +1,81 @@
+package org.jkva;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * How much a module is built and tested during its release.
+ */
+public enum ReleaseMode {
+    /**
+     * Verify the module with clean install first, then let release:prepare and release:perform build and test it
+     * again.
+     */
+    STANDARD("standard", true, ""),
+    /**
+     * Only run the tests in the verification build of release:prepare, which builds the sources that are tagged.
+     * release:perform builds the tag without running the tests again. The tests are skipped with -Darguments, which
+     * only works when the Release Plugin configuration doesn't set other arguments, see {@link #checkSupported}.
+     */
+    SINGLE_BUILD("single-build", false, " -Darguments=-DskipTests");
+
+    private final String name;
+    private final boolean verifyBuildNeeded;
+    private final String performOptions;
+
+    ReleaseMode(String name, boolean verifyBuildNeeded, String performOptions) {
+        this.name = name;
+        this.verifyBuildNeeded = verifyBuildNeeded;
+        this.performOptions = performOptions;
+    }
+
+    public static ReleaseMode fromName(String name) throws MojoFailureException {
+        for (ReleaseMode releaseMode : values()) {
+            if (releaseMode.name.equals(name)) {
+                return releaseMode;
+            }
+        }
+        throw new MojoFailureException("Unknown releaseMode: " + name + ". Use standard or single-build");
+    }
+
+    /**
+     * @return whether a clean install is needed before release:prepare
+     */
+    public boolean isVerifyBuildNeeded() {
+        return verifyBuildNeeded;
+    }
+
+    /**
+     * Check that the perform options take effect for the project. Arguments in the POM configuration win over
+     * -Darguments, unless they refer to it with ${arguments}, so they must skip the tests themselves.
+     *
+     * @throws MojoFailureException when release:perform would run the tests again
+     */
+    public void checkSupported(String moduleKey, MavenProject project) throws MojoFailureException {
+        if (performOptions.isEmpty()) {
+            return;
+        }
+        final String arguments = ReleasePluginConfiguration.of(project).getArguments();
+        if (arguments == null || arguments.contains("${arguments}")) {
+            return;
+        }
+        final List<String> options = Arrays.asList(arguments.split(" "));
+        if (options.contains("-DskipTests") || options.contains("-DskipTests=true")
+                || options.contains("-Dmaven.test.skip=true")) {
+            return;
+        }
+        throw new MojoFailureException("The Release Plugin of " + moduleKey + " is configured with the arguments ["
+                + arguments + "], which win over -Darguments=-DskipTests, so release:perform would run the tests "
+                + "again. Add ${arguments} or -DskipTests to the configured arguments, or use releaseMode standard");
+    }
+
+    /**
+     * @return the options for release:perform
+     */
+    public String getPerformOptions() {
+        return performOptions;
+    }
+}
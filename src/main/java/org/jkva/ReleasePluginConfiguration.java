@@ -0,0 +1,92 @@
+package org.jkva;
+
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginManagement;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * The configuration of the Release Plugin in a project that decides what release:perform builds: the goals, the
+ * arguments and the release profiles. A build that does part of the work of release:perform needs the same.
+ */
+public class ReleasePluginConfiguration {
+
+    private static final String GROUP_ID = "org.apache.maven.plugins";
+    private static final String ARTIFACT_ID = "maven-release-plugin";
+
+    private final String goals;
+    private final String arguments;
+    private final String releaseProfiles;
+    private final boolean useReleaseProfile;
+
+    ReleasePluginConfiguration(String goals, String arguments, String releaseProfiles, boolean useReleaseProfile) {
+        this.goals = goals;
+        this.arguments = arguments;
+        this.releaseProfiles = releaseProfiles;
+        this.useReleaseProfile = useReleaseProfile;
+    }
+
+    public static ReleasePluginConfiguration of(MavenProject project) {
+        Plugin plugin = project.getPlugin(GROUP_ID + ":" + ARTIFACT_ID);
+        if (plugin == null) {
+            final PluginManagement pluginManagement = project.getPluginManagement();
+            if (pluginManagement != null) {
+                plugin = pluginManagement.getPluginsAsMap().get(GROUP_ID + ":" + ARTIFACT_ID);
+            }
+        }
+        final Xpp3Dom configuration = plugin != null ? (Xpp3Dom) plugin.getConfiguration() : null;
+        // useReleaseProfile is true up to version 2, false from version 3
+        final boolean useReleaseProfileByDefault = plugin == null || plugin.getVersion() == null
+                || !plugin.getVersion().matches("[3-9].*");
+        final String useReleaseProfile = getValue(configuration, "useReleaseProfile");
+        return new ReleasePluginConfiguration(getValue(configuration, "goals"), getValue(configuration, "arguments"),
+                getValue(configuration, "releaseProfiles"),
+                useReleaseProfile != null ? Boolean.parseBoolean(useReleaseProfile) : useReleaseProfileByDefault);
+    }
+
+    private static String getValue(Xpp3Dom configuration, String name) {
+        final Xpp3Dom child = configuration != null ? configuration.getChild(name) : null;
+        if (child == null || child.getValue() == null || child.getValue().trim().isEmpty()) {
+            return null;
+        }
+        return child.getValue().trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * @return the arguments configured in the POM, or null
+     */
+    public String getArguments() {
+        return arguments;
+    }
+
+    /**
+     * @return true when the goals are configured in the POM, which -Dgoals can't override
+     */
+    public boolean hasConfiguredGoals() {
+        return goals != null;
+    }
+
+    /**
+     * @return the goals release:perform runs, deploy when they are not configured
+     */
+    public String getGoals() {
+        return goals != null ? goals : "deploy";
+    }
+
+    /**
+     * @return the options release:perform passes to the build of the tag, starting with a space, or an empty string
+     */
+    public String getBuildOptions() {
+        final StringBuilder sb = new StringBuilder();
+        if (arguments != null) {
+            sb.append(' ').append(arguments);
+        }
+        if (useReleaseProfile) {
+            sb.append(" -DperformRelease=true");
+        }
+        if (releaseProfiles != null) {
+            sb.append(" -P").append(releaseProfiles.replace(" ", ""));
+        }
+        return sb.toString();
+    }
+}
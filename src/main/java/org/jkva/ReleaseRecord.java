@@ -0,0 +1,70 @@
+package org.jkva;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A module that has been released during this run.
+ */
+public final class ReleaseRecord {
+
+    private final String groupId;
+    private final String artifactId;
+    private final String oldVersion;
+    private final String newVersion;
+    private final Date releaseDate;
+
+    public ReleaseRecord(String groupId, String artifactId, String oldVersion, String newVersion, Date releaseDate) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.oldVersion = oldVersion;
+        this.newVersion = newVersion;
+        this.releaseDate = releaseDate;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public String getOldVersion() {
+        return oldVersion;
+    }
+
+    public String getNewVersion() {
+        return newVersion;
+    }
+
+    public Date getReleaseDate() {
+        return releaseDate;
+    }
+
+    public Identifier toIdentifier() {
+        final Identifier identifier = new Identifier();
+        identifier.setGroupId(groupId);
+        identifier.setArtifactId(artifactId);
+        return identifier;
+    }
+
+    public Map<String, Object> toMap() {
+        final Map<String, Object> ret = new LinkedHashMap<String, Object>();
+        ret.put("groupId", groupId);
+        ret.put("artifactId", artifactId);
+        ret.put("oldVersion", oldVersion);
+        ret.put("newVersion", newVersion);
+        ret.put("releaseDate", releaseDate.getTime());
+        return ret;
+    }
+
+    /**
+     * Formats the record like this: org.apache.maven:maven-core [1.0-SNAPSHOT] -> [1.0]
+     */
+    @Override
+    public String toString() {
+        return String.format("%s:%s [%s] -> [%s]", groupId, artifactId, oldVersion, newVersion);
+    }
+}
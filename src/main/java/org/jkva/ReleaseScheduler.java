@@ -0,0 +1,210 @@
+package org.jkva;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import static org.jkva.ConfigUtil.createProjectIdentifier;
+
+/**
+ * Releases the modules of a {@link ReleaseGraph}, releasing every module of which all upstream modules are done in
+ * parallel. The releases themselves run on the workers, each in its own working copy. Everything that happens after
+ * a release (like updating the dependent POMs) runs on the calling thread, one module at a time.
+ */
+public class ReleaseScheduler {
+
+    public interface ReleaseTask {
+        /**
+         * @return the working copy the module must be released in, or null when any working copy will do
+         */
+        File getWorkingCopy(ProjectModule module) throws MojoFailureException;
+
+        /**
+         * Release the module in the given working copy. Runs on a worker thread.
+         */
+        List<ProjectModule> release(ProjectModule module, File workingCopy) throws MojoFailureException;
+
+        /**
+         * Called on the scheduling thread when a module is released, before any downstream module is started.
+         */
+        void afterRelease(ProjectModule module, List<ProjectModule> releasedModules) throws MojoFailureException;
+
+        /**
+         * Called on the scheduling thread after {@link #afterRelease} has been called for all modules that finished
+         * since the previous wave, before any downstream module is started.
+         */
+        void afterWave(List<ProjectModule> modules) throws MojoFailureException;
+    }
+
+    private final Log log;
+    private final WorkingCopyPool workingCopyPool;
+
+    public ReleaseScheduler(Log log, WorkingCopyPool workingCopyPool) {
+        this.log = log;
+        this.workingCopyPool = workingCopyPool;
+    }
+
+    public void run(ReleaseGraph graph, final ReleaseTask task) throws MojoFailureException {
+        // Fail early on cycles, otherwise the scheduler would wait forever
+        graph.getTopologicalOrder();
+
+        final Map<ProjectModule, Integer> pendingUpstreams = new HashMap<ProjectModule, Integer>();
+        final Queue<ProjectModule> ready = new LinkedList<ProjectModule>();
+        for (ProjectModule module : graph.getModules()) {
+            final int upstreamCount = graph.getUpstreams(module).size();
+            pendingUpstreams.put(module, upstreamCount);
+            if (upstreamCount == 0) {
+                ready.add(module);
+            }
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(workingCopyPool.size());
+        final CompletionService<ReleaseResult> completionService = new ExecutorCompletionService<ReleaseResult>(executor);
+        int running = 0;
+        int done = 0;
+        MojoFailureException failure = null;
+        // Modules that were released, but of which the dependent POMs were not updated and committed
+        final List<ProjectModule> notPropagated = new ArrayList<ProjectModule>();
+        try {
+            while (done < graph.size()) {
+                while (failure == null && !ready.isEmpty()) {
+                    final ProjectModule module = ready.remove();
+                    log.info("Scheduling release of " + createProjectIdentifier(module));
+                    final File requiredWorkingCopy;
+                    try {
+                        requiredWorkingCopy = task.getWorkingCopy(module);
+                    } catch (MojoFailureException e) {
+                        failure = e;
+                        break;
+                    }
+                    completionService.submit(new Callable<ReleaseResult>() {
+                        public ReleaseResult call() throws Exception {
+                            final File workingCopy = requiredWorkingCopy != null
+                                    ? workingCopyPool.acquire(requiredWorkingCopy) : workingCopyPool.acquire();
+                            try {
+                                return new ReleaseResult(module, task.release(module, workingCopy));
+                            } finally {
+                                workingCopyPool.release(workingCopy);
+                            }
+                        }
+                    });
+                    running++;
+                }
+                if (running == 0) {
+                    break;
+                }
+
+                final List<ReleaseResult> results = new ArrayList<ReleaseResult>();
+                Future<ReleaseResult> future = completionService.take();
+                while (future != null) {
+                    running--;
+                    try {
+                        results.add(future.get());
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = toMojoFailureException(e.getCause());
+                        }
+                    }
+                    future = completionService.poll();
+                }
+
+                // Modules that are released are tagged, so their dependents are updated also when another release
+                // failed. Only a failure to update them stops that.
+                final List<ProjectModule> wave = new ArrayList<ProjectModule>();
+                for (ReleaseResult result : results) {
+                    done++;
+                    if (!notPropagated.isEmpty()) {
+                        notPropagated.add(result.module);
+                        continue;
+                    }
+                    try {
+                        task.afterRelease(result.module, result.releasedModules);
+                        wave.add(result.module);
+                    } catch (MojoFailureException e) {
+                        if (failure == null) {
+                            failure = e;
+                        }
+                        notPropagated.add(result.module);
+                    }
+                }
+                if (!notPropagated.isEmpty()) {
+                    // The dependent POMs of the wave may be changed, but they are not committed
+                    notPropagated.addAll(0, wave);
+                    continue;
+                }
+                if (wave.isEmpty()) {
+                    continue;
+                }
+                try {
+                    task.afterWave(wave);
+                } catch (MojoFailureException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                    notPropagated.addAll(wave);
+                    continue;
+                }
+                if (failure != null) {
+                    continue;
+                }
+                for (ProjectModule module : wave) {
+                    for (ProjectModule downstream : graph.getDownstreams(module)) {
+                        final int remaining = pendingUpstreams.get(downstream) - 1;
+                        pendingUpstreams.put(downstream, remaining);
+                        if (remaining == 0) {
+                            ready.add(downstream);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoFailureException("Interrupted while waiting for releases to finish", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (!notPropagated.isEmpty()) {
+            final List<String> keys = new ArrayList<String>();
+            for (ProjectModule module : notPropagated) {
+                keys.add(createProjectIdentifier(module));
+            }
+            log.error("Released, but the dependent POMs are not updated and committed: " + keys
+                    + ". Run again with -Dresume to update them");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private MojoFailureException toMojoFailureException(Throwable cause) {
+        if (cause instanceof MojoFailureException) {
+            return (MojoFailureException) cause;
+        }
+        return new MojoFailureException("Release failed: " + cause.getMessage(), cause);
+    }
+
+    private static class ReleaseResult {
+        private final ProjectModule module;
+        private final List<ProjectModule> releasedModules;
+
+        private ReleaseResult(ProjectModule module, List<ProjectModule> releasedModules) {
+            this.module = module;
+            this.releasedModules = releasedModules;
+        }
+    }
+}
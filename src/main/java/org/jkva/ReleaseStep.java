@@ -0,0 +1,21 @@
+package org.jkva;
+
+/**
+ * The steps of a release, as recorded in the {@link ReleaseJournal}.
+ */
+public enum ReleaseStep {
+    /** Decide the release and next development version of the module. */
+    PLAN,
+    /** Build and test the module before releasing it (clean install). */
+    VERIFY,
+    /** Tag the release and move to the next development version (release:prepare). */
+    PREPARE,
+    /** Build the tag and deploy it (release:perform), or only install it when deploys are pipelined. */
+    PERFORM,
+    /** Deploy the installed tag in the background, when deploys are pipelined. */
+    DEPLOY,
+    /** Update a dependent POM to a released version. */
+    UPDATE_DEPENDENTS,
+    /** Commit an updated dependent POM. */
+    COMMIT
+}
@@ -9,69 +9,75 @@ import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Jan-Kees van Andel - @jankeesvanandel
  */
 public class ReleasedModuleTracker {
 
+    private static final String NEW_LINE = System.getProperty("line.separator");
+
     /**
-     * Template for a released module, like this: org.apache.maven:maven-core [1.0-SNAPSHOT] -> [1.0]
+     * Released modules by groupId:artifactId, in the order they were released.
      */
-    private static final String MODULE_TEMPLATE = "%s:%s [%s] -> [%s]";
-
-    private final List<String> releasedModules = new ArrayList<String>();
+    private final Map<String, ReleaseRecord> releasedModules = new LinkedHashMap<String, ReleaseRecord>();
     private final File outputFile;
+    private final File reportFile;
 
-    public ReleasedModuleTracker(final File outputFile) {
+    /**
+     * @param outputFile human readable summary, written at the end of the release, also when it failed
+     * @param reportFile JSON Lines report, every release is appended as soon as it is added
+     */
+    public ReleasedModuleTracker(final File outputFile, final File reportFile) {
         this.outputFile = outputFile;
+        this.reportFile = reportFile;
     }
 
-    public void addReleasedModule(String groupId, String artifactId, String oldVersion) {
-        addReleasedModule(groupId, artifactId, oldVersion, oldVersion.replace("-SNAPSHOT", ""));
+    public synchronized void addReleasedModule(String groupId, String artifactId, String oldVersion, String newVersion)
+            throws MojoFailureException {
+        final ReleaseRecord record = new ReleaseRecord(groupId, artifactId, oldVersion, newVersion, new Date());
+        releasedModules.put(createKey(groupId, artifactId), record);
+        appendToReport(record);
     }
 
-    public void addReleasedModule(String groupId, String artifactId, String oldVersion, String newVersion) {
-        String moduleString = String.format(MODULE_TEMPLATE, groupId, artifactId, oldVersion, newVersion);
-        releasedModules.add(moduleString);
+    public synchronized List<ReleaseRecord> getReleasedModules() {
+        return new ArrayList<ReleaseRecord>(releasedModules.values());
     }
 
-    public List<String> getReleasedModules() {
-        return releasedModules;
+    public synchronized boolean containsReleasedModule(String groupId, String artifactId) {
+        return releasedModules.containsKey(createKey(groupId, artifactId));
     }
 
-    public boolean containsReleasedModule(String groupId, String artifactId) {
-        final String moduleIdentifier = String.format("%s:%s", groupId, artifactId);
-        for (String releasedModule : releasedModules) {
-            if (releasedModule.startsWith(moduleIdentifier)) {
-                return true;
-            }
-        }
-        return false;
+    public synchronized ReleaseRecord getReleaseRecord(String groupId, String artifactId) {
+        return releasedModules.get(createKey(groupId, artifactId));
     }
 
-    public Identifier getReleasedModule(String groupId, String artifactId) {
-        final String moduleIdentifier = String.format("%s:%s", groupId, artifactId);
-        for (String releasedModule : releasedModules) {
-            if (releasedModule.startsWith(moduleIdentifier)) {
-                final Identifier identifier = new Identifier();
-                final String[] splitted = releasedModule.split(":");
-                identifier.setGroupId(splitted[0]);
-                identifier.setArtifactId(splitted[1].split(" ")[0]);
-                return identifier;
-            }
-        }
-        return null;
+    public synchronized Identifier getReleasedModule(String groupId, String artifactId) {
+        final ReleaseRecord record = getReleaseRecord(groupId, artifactId);
+        return record != null ? record.toIdentifier() : null;
+    }
+
+    private String createKey(String groupId, String artifactId) {
+        return groupId + ":" + artifactId;
     }
 
-    public void writeToFile() throws MojoFailureException {
-        String newLine = System.getProperty("line.separator");
+    private void appendToReport(ReleaseRecord record) throws MojoFailureException {
+        try {
+            Files.createParentDirs(reportFile);
+            Files.append(JsonUtil.toJson(record.toMap()) + NEW_LINE, reportFile, Charsets.UTF_8);
+        } catch (IOException e) {
+            throw new MojoFailureException("Error writing release report to file", e);
+        }
+    }
 
+    public synchronized void writeToFile() throws MojoFailureException {
         StringBuilder sb = new StringBuilder();
-        sb.append(new SimpleDateFormat("dd-MM-yyyy").format(new Date())).append(newLine);
-        for (String releasedModule : releasedModules) {
-            sb.append(releasedModule).append(newLine);
+        sb.append(new SimpleDateFormat("dd-MM-yyyy").format(new Date())).append(NEW_LINE);
+        for (ReleaseRecord releasedModule : releasedModules.values()) {
+            sb.append(releasedModule).append(NEW_LINE);
         }
         try {
             if (!outputFile.exists()) {
@@ -0,0 +1,165 @@
+package org.jkva;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+
+import static org.jkva.ConfigUtil.createProjectIdentifier;
+
+/**
+ * Index from groupId:artifactId to the projects in the reactor that declare a dependency on it, in their dependencies
+ * or their dependency management. When the version of such a dependency refers to a property that is defined in a
+ * parent POM, the parent is a dependent as well, because that's where the version has to be changed.
+ */
+public class ReverseDependencyIndex {
+
+    private static final Pattern PROPERTY_REFERENCE = Pattern.compile("\\$\\{(.+)\\}");
+
+    private final Map<MavenProject, Integer> reactorOrder = new IdentityHashMap<MavenProject, Integer>();
+    private final Map<String, MavenProject> projectsByIdentifier = new HashMap<String, MavenProject>();
+    private final Map<String, Set<MavenProject>> dependents = new HashMap<String, Set<MavenProject>>();
+    private final Map<MavenProject, Map<String, Set<String>>> versionProperties =
+            new IdentityHashMap<MavenProject, Map<String, Set<String>>>();
+
+    public ReverseDependencyIndex(List<MavenProject> projects) {
+        for (MavenProject project : projects) {
+            reactorOrder.put(project, reactorOrder.size());
+            projectsByIdentifier.put(createProjectIdentifier(project), project);
+        }
+        for (MavenProject project : projects) {
+            for (Dependency dependency : project.getDependencies()) {
+                addDependent(createProjectIdentifier(dependency), project);
+            }
+            final Model model = getDeclaredModel(project);
+            final List<Dependency> declared = new ArrayList<Dependency>(model.getDependencies());
+            final DependencyManagement dependencyManagement = model.getDependencyManagement();
+            if (dependencyManagement != null) {
+                declared.addAll(dependencyManagement.getDependencies());
+            }
+            for (Dependency dependency : declared) {
+                final String key = createProjectIdentifier(resolveGroupId(dependency.getGroupId(), project),
+                        dependency.getArtifactId());
+                addDependent(key, project);
+                final Matcher propertyReference = PROPERTY_REFERENCE.matcher(String.valueOf(dependency.getVersion()));
+                if (propertyReference.matches()) {
+                    addVersionProperty(key, propertyReference.group(1), project);
+                }
+            }
+        }
+    }
+
+    /**
+     * The model as it is written in the POM, without inherited elements. Projects that were not read from a POM
+     * only have the effective model.
+     */
+    private static Model getDeclaredModel(MavenProject project) {
+        return project.getOriginalModel() != null ? project.getOriginalModel() : project.getModel();
+    }
+
+    private String resolveGroupId(String groupId, MavenProject project) {
+        final Matcher propertyReference = PROPERTY_REFERENCE.matcher(String.valueOf(groupId));
+        if (!propertyReference.matches()) {
+            return groupId;
+        }
+        final String property = propertyReference.group(1);
+        if (property.equals("project.groupId") || property.equals("pom.groupId") || property.equals("groupId")) {
+            return project.getGroupId();
+        }
+        if (property.equals("project.parent.groupId") && project.getParent() != null) {
+            return project.getParent().getGroupId();
+        }
+        return project.getProperties().getProperty(property, groupId);
+    }
+
+    private void addDependent(String key, MavenProject project) {
+        Set<MavenProject> projects = dependents.get(key);
+        if (projects == null) {
+            projects = new HashSet<MavenProject>();
+            dependents.put(key, projects);
+        }
+        projects.add(project);
+    }
+
+    /**
+     * Find the reactor project that defines the property: the project itself or the closest parent.
+     */
+    private void addVersionProperty(String key, String property, MavenProject project) {
+        for (MavenProject owner = project; owner != null; owner = getReactorParent(owner)) {
+            if (getDeclaredModel(owner).getProperties().containsKey(property)) {
+                if (owner != project) {
+                    addDependent(key, owner);
+                }
+                Map<String, Set<String>> properties = versionProperties.get(owner);
+                if (properties == null) {
+                    properties = new HashMap<String, Set<String>>();
+                    versionProperties.put(owner, properties);
+                }
+                Set<String> keys = properties.get(property);
+                if (keys == null) {
+                    keys = new HashSet<String>();
+                    properties.put(property, keys);
+                }
+                keys.add(key);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the parent, when it is part of the reactor
+     */
+    private MavenProject getReactorParent(MavenProject project) {
+        final MavenProject parent = project.getParent();
+        return parent != null ? projectsByIdentifier.get(createProjectIdentifier(parent)) : null;
+    }
+
+    /**
+     * @param keys groupId:artifactId of the released modules
+     * @return the projects that declare a dependency on any of them, in reactor order
+     */
+    public List<MavenProject> getDependents(Collection<String> keys) {
+        final Map<Integer, MavenProject> ret = new TreeMap<Integer, MavenProject>();
+        for (String key : keys) {
+            final Set<MavenProject> projects = dependents.get(key);
+            if (projects != null) {
+                for (MavenProject project : projects) {
+                    ret.put(reactorOrder.get(project), project);
+                }
+            }
+        }
+        return new ArrayList<MavenProject>(ret.values());
+    }
+
+    /**
+     * @param releasedVersions the released version by groupId:artifactId
+     * @return the new values of the version properties the project defines for the released modules
+     */
+    public Map<String, String> getVersionProperties(MavenProject project, Map<String, String> releasedVersions) {
+        final Map<String, String> ret = new LinkedHashMap<String, String>();
+        final Map<String, Set<String>> properties = versionProperties.get(project);
+        if (properties != null) {
+            for (Map.Entry<String, Set<String>> entry : properties.entrySet()) {
+                for (String key : entry.getValue()) {
+                    if (releasedVersions.containsKey(key)) {
+                        ret.put(entry.getKey(), releasedVersions.get(key));
+                    }
+                }
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,140 @@
+package org.jkva;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.common.base.Joiner;
+
+/**
+ * Collects the POMs that were changed after a wave of releases, so they can be committed in one changeset.
+ * <p/>
+ * With Git, the pushes are deferred as well: release:prepare doesn't push its commits and tag (release:perform checks
+ * out the tag from the local repository instead) and everything is pushed at once when the batch is committed. With
+ * more workers, the commits and tag of every release are merged from the worker's working copy into the current
+ * working copy, one release at a time, so concurrent releases never push to the same branch. A merge keeps every tag
+ * on the branch, a rebase would not.
+ */
+public class ScmCommitBatch {
+
+    private final Log log;
+    private final ProcessFactory processFactory;
+    private final File projectBase;
+    private final ReleaseJournal journal;
+    private final boolean deferPush;
+
+    private final Map<String, String> messagesBySubject = new LinkedHashMap<String, String>();
+    private final Set<String> files = new LinkedHashSet<String>();
+    private boolean pushPending;
+
+    public ScmCommitBatch(Log log, ProcessFactory processFactory, File projectBase, ReleaseJournal journal,
+                          boolean deferPush) {
+        this.log = log;
+        this.processFactory = processFactory;
+        this.projectBase = projectBase;
+        this.journal = journal;
+        this.deferPush = deferPush;
+    }
+
+    /**
+     * @return the options for release:prepare
+     */
+    public String getPrepareOptions() {
+        return deferPush ? " -DpushChanges=false" : "";
+    }
+
+    /**
+     * @return the options for release:perform
+     */
+    public String getPerformOptions() {
+        return deferPush ? " -DlocalCheckout=true" : "";
+    }
+
+    public boolean isPushDeferred() {
+        return deferPush;
+    }
+
+    /**
+     * Merge the commits and tag that release:prepare made in a worker's working copy into the current working copy.
+     * Merging a release twice, like when resuming, changes nothing.
+     */
+    public synchronized void merge(String moduleKey, File workingCopy) throws MojoFailureException {
+        log.info("Merging the release of " + moduleKey + " from " + workingCopy);
+        processFactory.createGitInvoker("").execute("fetch --tags " + workingCopy.getAbsolutePath() + " HEAD");
+        processFactory.createGitInvoker("").execute("merge --no-edit FETCH_HEAD");
+    }
+
+    /**
+     * Register that a release was made, of which the commits and tag still have to be pushed.
+     */
+    public synchronized void releaseMade() {
+        pushPending = deferPush;
+    }
+
+    /**
+     * Add a changed POM to the batch.
+     *
+     * @param subject the subject in the {@link ReleaseJournal}, of which the commit step is completed when the batch
+     *                is committed
+     */
+    public synchronized void add(String subject, File pomFile, String message) throws MojoFailureException {
+        messagesBySubject.put(subject, message);
+        files.add(getRelativePath(pomFile));
+    }
+
+    /**
+     * Commit all changed POMs in one changeset and push the changes.
+     */
+    public synchronized void commit() throws MojoFailureException {
+        if (files.isEmpty() && !pushPending) {
+            return;
+        }
+        final String message = createCommitMessage();
+        final String includes = Joiner.on(",").join(files);
+        log.info("Committing " + files.size() + " changed POMs: " + message);
+
+        if (deferPush) {
+            if (!files.isEmpty()) {
+                processFactory.createGitInvoker("").execute("commit -m " + message + " -- " + Joiner.on(" ").join(files));
+            }
+            processFactory.createGitInvoker("").execute("push --follow-tags");
+        } else {
+            processFactory.createMavenInvoker("").execute("scm:checkin -Dmessage=\"" + message + "\" -Dincludes=" + includes);
+        }
+
+        for (String subject : messagesBySubject.keySet()) {
+            journal.complete(subject, ReleaseStep.COMMIT);
+        }
+        messagesBySubject.clear();
+        files.clear();
+        pushPending = false;
+    }
+
+    private String createCommitMessage() {
+        if (messagesBySubject.isEmpty()) {
+            return "Release";
+        }
+        return Joiner.on("_").join(new LinkedHashSet<String>(messagesBySubject.values()));
+    }
+
+    private String getRelativePath(File file) throws MojoFailureException {
+        final String base;
+        final String path;
+        try {
+            base = projectBase.getCanonicalPath().replace('\\', '/');
+            path = file.getCanonicalPath().replace('\\', '/');
+        } catch (IOException e) {
+            throw new MojoFailureException("Can't determine canonical path of: " + file, e);
+        }
+        if (!path.startsWith(base + "/")) {
+            throw new MojoFailureException("File is not in the working copy: " + file);
+        }
+        return path.substring(base.length() + 1);
+    }
+}
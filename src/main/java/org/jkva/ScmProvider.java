@@ -0,0 +1,54 @@
+package org.jkva;
+
+import java.util.List;
+
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * The SCM operations that check the workspace before a release.
+ */
+public interface ScmProvider {
+
+    /**
+     * Bring the working copy up to date with the remote repository.
+     */
+    void update() throws MojoFailureException;
+
+    /**
+     * @return the files in the working copy that differ from the repository, including files that are not in the
+     * repository at all
+     */
+    List<LocalChange> getLocalChanges() throws MojoFailureException;
+
+    void close();
+
+    /**
+     * A changed file in the working copy.
+     */
+    final class LocalChange {
+
+        private final String status;
+        private final String path;
+
+        public LocalChange(String status, String path) {
+            this.status = status;
+            this.path = path;
+        }
+
+        /**
+         * @return what happened to the file, like added, modified or untracked
+         */
+        public String getStatus() {
+            return status;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public String toString() {
+            return status + ": " + path;
+        }
+    }
+}
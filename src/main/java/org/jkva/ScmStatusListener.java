@@ -0,0 +1,44 @@
+package org.jkva;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Collects the changed files that scm:status reports, between the working directory line and the end of the
+ * plugin output.
+ */
+public class ScmStatusListener implements OutputListener {
+
+    private final List<String> statusLines = new ArrayList<String>();
+    private boolean started;
+    private boolean finished;
+
+    public void onLine(String line) {
+        if (finished) {
+            return;
+        }
+        if (started) {
+            if (line.startsWith("[INFO] --------------------------")) {
+                finished = true;
+                return;
+            }
+            if (isInterestingStatusLine(line)) {
+                statusLines.add(line);
+            }
+        }
+        if (line.startsWith("[INFO] Working directory: ")) {
+            started = true;
+        }
+    }
+
+    private boolean isInterestingStatusLine(final String line) {
+        return !line.contains("[INFO] Executing: ")
+            && !line.contains("[INFO] Working directory: ");
+    }
+
+    public ImmutableList<String> getStatusLines() {
+        return ImmutableList.copyOf(statusLines);
+    }
+}
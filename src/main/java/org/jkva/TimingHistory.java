@@ -0,0 +1,96 @@
+package org.jkva;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * The durations of the release steps of earlier runs, for estimating how long a release will take. Every completed
+ * step is appended as a line: {@code <timestamp> <subject> <step> <millis>}, separated by tabs. Estimates are the
+ * average of the most recent durations of a step.
+ */
+public class TimingHistory {
+
+    private static final int RECENT_DURATIONS = 5;
+    private static final String SEPARATOR = "\t";
+    private static final String NEW_LINE = "\n";
+
+    private final Log log;
+    private final File historyFile;
+    private final Map<String, LinkedList<Long>> durations = new HashMap<String, LinkedList<Long>>();
+
+    private TimingHistory(Log log, File historyFile) {
+        this.log = log;
+        this.historyFile = historyFile;
+    }
+
+    public static TimingHistory open(Log log, File historyFile) throws MojoFailureException {
+        final TimingHistory history = new TimingHistory(log, historyFile);
+        if (historyFile.exists()) {
+            try {
+                for (String line : Files.readLines(historyFile, Charsets.UTF_8)) {
+                    final String[] fields = line.split(SEPARATOR);
+                    if (fields.length == 4) {
+                        try {
+                            history.add(fields[1], ReleaseStep.valueOf(fields[2]), Long.parseLong(fields[3]));
+                        } catch (IllegalArgumentException e) {
+                            log.debug("Ignoring invalid timing history line: " + line);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new MojoFailureException("Error reading timing history: " + historyFile, e);
+            }
+        }
+        return history;
+    }
+
+    private void add(String subject, ReleaseStep step, long millis) {
+        final String key = subject + SEPARATOR + step;
+        LinkedList<Long> recent = durations.get(key);
+        if (recent == null) {
+            recent = new LinkedList<Long>();
+            durations.put(key, recent);
+        }
+        recent.addLast(millis);
+        if (recent.size() > RECENT_DURATIONS) {
+            recent.removeFirst();
+        }
+    }
+
+    public synchronized void record(String subject, ReleaseStep step, long millis) throws MojoFailureException {
+        add(subject, step, millis);
+        final String line = System.currentTimeMillis() + SEPARATOR + subject + SEPARATOR + step + SEPARATOR + millis
+                + NEW_LINE;
+        try {
+            Files.createParentDirs(historyFile);
+            Files.append(line, historyFile, Charsets.UTF_8);
+        } catch (IOException e) {
+            // The history is only used for estimates, it must never fail a release
+            log.warn("Error writing timing history " + historyFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the estimated duration in milliseconds, or null when the step never completed before
+     */
+    public synchronized Long estimate(String subject, ReleaseStep step) {
+        final LinkedList<Long> recent = durations.get(subject + SEPARATOR + step);
+        if (recent == null || recent.isEmpty()) {
+            return null;
+        }
+        long total = 0;
+        for (Long duration : recent) {
+            total += duration;
+        }
+        return total / recent.size();
+    }
+}
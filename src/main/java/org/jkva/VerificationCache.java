@@ -0,0 +1,163 @@
+package org.jkva;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * Remembers which module contents were built and tested successfully, so the verification build before a release
+ * can be skipped when exactly the same content was verified before, like in an earlier run that failed later on.
+ * <p/>
+ * The key is a SHA-1 hash of:
+ * <ul>
+ * <li>the released versions of the upstream modules, as sorted groupId:artifactId=version lines</li>
+ * <li>the relative path and the SHA-1 hash of every file in the module directory, in sorted order, except the
+ * build output, SCM metadata, IDE files and the files the Release Plugin leaves behind</li>
+ * </ul>
+ * The key has to be computed in the working copy that is released, after it is updated, otherwise content that is
+ * never tagged could be marked verified. Modules with other SNAPSHOT dependencies are never cached, because the content of those can
+ * change without the key changing. Every verified key is a small file in the cache directory; the least recently
+ * used ones are removed when there are more than the maximum number of entries.
+ */
+public class VerificationCache {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.sha1();
+    private static final ImmutableSet<String> IGNORED_DIRECTORIES = ImmutableSet.of("target", ".git", ".svn", ".idea");
+    private static final ImmutableSet<String> IGNORED_FILES = ImmutableSet.of("release.properties");
+    private static final String[] IGNORED_EXTENSIONS = {".releaseBackup", ".iml"};
+
+    private final Log log;
+    private final File directory;
+    private final int maxEntries;
+
+    public VerificationCache(Log log, File directory, int maxEntries) {
+        this.log = log;
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param moduleDir        the directory the module is built in
+     * @param projects         the projects that are built, used for checking the dependencies
+     * @param upstreamVersions the released versions of the upstream modules, by groupId:artifactId
+     * @return the key of the content, or null when the content can't be cached
+     */
+    public String computeKey(File moduleDir, Collection<MavenProject> projects, Map<String, String> upstreamVersions)
+            throws MojoFailureException {
+        final Set<String> builtProjects = new HashSet<String>();
+        for (MavenProject project : projects) {
+            builtProjects.add(ConfigUtil.createProjectIdentifier(project));
+        }
+        for (MavenProject project : projects) {
+            for (Dependency dependency : project.getDependencies()) {
+                final String key = ConfigUtil.createProjectIdentifier(dependency);
+                if (dependency.getVersion() != null && dependency.getVersion().endsWith(DefaultVersionPolicy.SNAPSHOT)
+                        && !upstreamVersions.containsKey(key) && !builtProjects.contains(key)) {
+                    log.info("Not using the verification cache for " + moduleDir + ", it depends on " + key + ":"
+                            + dependency.getVersion());
+                    return null;
+                }
+            }
+        }
+
+        final Hasher hasher = HASH_FUNCTION.newHasher();
+        for (Map.Entry<String, String> entry : new TreeMap<String, String>(upstreamVersions).entrySet()) {
+            hasher.putString(entry.getKey() + "=" + entry.getValue() + "\n", Charsets.UTF_8);
+        }
+        try {
+            hashDirectory(hasher, moduleDir, "");
+        } catch (IOException e) {
+            throw new MojoFailureException("Error computing the content hash of " + moduleDir, e);
+        }
+        return hasher.hash().toString();
+    }
+
+    private void hashDirectory(Hasher hasher, File dir, String relativePath) throws IOException {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            final String name = file.getName();
+            final String path = relativePath + "/" + name;
+            if (file.isDirectory()) {
+                if (!IGNORED_DIRECTORIES.contains(name)) {
+                    hashDirectory(hasher, file, path);
+                }
+            } else if (!isIgnoredFile(name)) {
+                hasher.putString(path + "\n", Charsets.UTF_8);
+                hasher.putBytes(Files.hash(file, HASH_FUNCTION).asBytes());
+            }
+        }
+    }
+
+    private boolean isIgnoredFile(String name) {
+        if (IGNORED_FILES.contains(name)) {
+            return true;
+        }
+        for (String extension : IGNORED_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized boolean isVerified(String key) {
+        final File entry = new File(directory, key);
+        if (!entry.isFile()) {
+            return false;
+        }
+        // Keep recently used entries from being evicted
+        entry.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    public synchronized void markVerified(String key, String moduleKey) throws MojoFailureException {
+        try {
+            Files.createParentDirs(new File(directory, key));
+            Files.write(moduleKey + " verified at " + new Date() + "\n", new File(directory, key), Charsets.UTF_8);
+        } catch (IOException e) {
+            throw new MojoFailureException("Error writing to the verification cache " + directory, e);
+        }
+        evict();
+    }
+
+    private void evict() {
+        final File[] entries = directory.listFiles();
+        if (entries == null || entries.length <= maxEntries) {
+            return;
+        }
+        Arrays.sort(entries, new Comparator<File>() {
+            public int compare(File file1, File file2) {
+                return Long.valueOf(file1.lastModified()).compareTo(file2.lastModified());
+            }
+        });
+        for (int i = 0; i < entries.length - maxEntries; i++) {
+            log.debug("Evicting verification cache entry " + entries[i].getName());
+            if (!entries[i].delete()) {
+                log.warn("Can't delete verification cache entry " + entries[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.jkva;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * The release and next development versions of the modules that are released, decided by the {@link VersionPolicy}
+ * before anything is released. The versions are recorded in the {@link ReleaseJournal}, because after a release the
+ * POM no longer contains the version the plan was based on.
+ */
+public class VersionPlan {
+
+    private static final String SEPARATOR = " ";
+
+    private final Log log;
+    private final VersionPolicy versionPolicy;
+    private final ReleaseJournal journal;
+    private final Map<String, String> releaseVersions = new HashMap<String, String>();
+    private final Map<String, String> developmentVersions = new HashMap<String, String>();
+
+    public VersionPlan(Log log, VersionPolicy versionPolicy, ReleaseJournal journal) {
+        this.log = log;
+        this.versionPolicy = versionPolicy;
+        this.journal = journal;
+    }
+
+    /**
+     * Plan the versions of a module, or read them from the journal when they were planned before.
+     *
+     * @param currentVersion the current SNAPSHOT version of the module
+     */
+    public synchronized void plan(String groupId, String artifactId, String currentVersion) throws MojoFailureException {
+        final String moduleKey = ConfigUtil.createProjectIdentifier(groupId, artifactId);
+        if (releaseVersions.containsKey(moduleKey)) {
+            return;
+        }
+        final String releaseVersion;
+        final String developmentVersion;
+        if (journal.begin(moduleKey, ReleaseStep.PLAN)) {
+            releaseVersion = versionPolicy.getReleaseVersion(currentVersion);
+            developmentVersion = versionPolicy.getNextDevelopmentVersion(releaseVersion);
+            journal.complete(moduleKey, ReleaseStep.PLAN, releaseVersion + SEPARATOR + developmentVersion);
+        } else {
+            final String[] versions = journal.getDetail(moduleKey, ReleaseStep.PLAN).split(SEPARATOR);
+            releaseVersion = versions[0];
+            developmentVersion = versions[1];
+        }
+        log.info(" + " + moduleKey + ": " + currentVersion + " -> " + releaseVersion + ", next: " + developmentVersion);
+        releaseVersions.put(moduleKey, releaseVersion);
+        developmentVersions.put(moduleKey, developmentVersion);
+    }
+
+    public void plan(ProjectModule module) throws MojoFailureException {
+        plan(module.getGroupId(), module.getArtifactId(), module.getRelatedMavenProject().getVersion());
+    }
+
+    public synchronized String getReleaseVersion(String groupId, String artifactId) throws MojoFailureException {
+        return get(releaseVersions, groupId, artifactId);
+    }
+
+    public synchronized String getDevelopmentVersion(String groupId, String artifactId) throws MojoFailureException {
+        return get(developmentVersions, groupId, artifactId);
+    }
+
+    /**
+     * @return the options for release:prepare, which make it use the planned versions
+     */
+    public String getPrepareOptions(String groupId, String artifactId) throws MojoFailureException {
+        return " -DreleaseVersion=" + getReleaseVersion(groupId, artifactId)
+                + " -DdevelopmentVersion=" + getDevelopmentVersion(groupId, artifactId);
+    }
+
+    private String get(Map<String, String> versions, String groupId, String artifactId) throws MojoFailureException {
+        final String moduleKey = ConfigUtil.createProjectIdentifier(groupId, artifactId);
+        final String version = versions.get(moduleKey);
+        if (version == null) {
+            throw new MojoFailureException("Illegal state: no version was planned for " + moduleKey);
+        }
+        return version;
+    }
+}
@@ -0,0 +1,20 @@
+package org.jkva;
+
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Decides which versions a module is released with. Implementations must have a public no-argument constructor, so
+ * they can be configured with the versionPolicy parameter.
+ */
+public interface VersionPolicy {
+
+    /**
+     * @param developmentVersion the current (SNAPSHOT) version of the module
+     */
+    String getReleaseVersion(String developmentVersion) throws MojoFailureException;
+
+    /**
+     * @return the SNAPSHOT version the module moves to after the release
+     */
+    String getNextDevelopmentVersion(String releaseVersion) throws MojoFailureException;
+}
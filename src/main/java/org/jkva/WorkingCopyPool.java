@@ -0,0 +1,89 @@
+package org.jkva;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Working copies that releases can run in. Every concurrently running release gets a working copy of its own, so
+ * concurrent release:prepare runs never touch the same files. With a single worker the current working copy is used,
+ * with more workers every worker gets a separate checkout of the project.
+ */
+public class WorkingCopyPool {
+
+    private final List<File> workingCopies;
+    private final LinkedList<File> available;
+
+    public WorkingCopyPool(List<File> workingCopies) {
+        this.workingCopies = new ArrayList<File>(workingCopies);
+        this.available = new LinkedList<File>(workingCopies);
+    }
+
+    public static WorkingCopyPool create(Log log, ProcessFactory processFactory, File projectBase, File workersDirectory,
+                                         int workers) throws MojoFailureException {
+        if (workers < 1) {
+            throw new MojoFailureException("The number of workers must be at least 1, but was: " + workers);
+        }
+        final List<File> workingCopies = new ArrayList<File>();
+        if (workers == 1) {
+            workingCopies.add(projectBase);
+        } else {
+            for (int i = 1; i <= workers; i++) {
+                final File workingCopy = new File(workersDirectory, "worker-" + i);
+                log.info("Preparing working copy for worker " + i + ": " + workingCopy);
+                final Invoker mavenInvoker = processFactory.createMavenInvoker("");
+                mavenInvoker.execute("scm:checkout -DcheckoutDirectory=" + workingCopy.getAbsolutePath()
+                        + " -DskipCheckoutIfExists=true");
+                workingCopies.add(workingCopy);
+            }
+        }
+        return new WorkingCopyPool(workingCopies);
+    }
+
+    public synchronized File acquire() throws InterruptedException {
+        while (available.isEmpty()) {
+            wait();
+        }
+        return available.removeFirst();
+    }
+
+    /**
+     * Wait for a specific working copy, like the one a module was prepared in by the run that is resumed.
+     *
+     * @throws MojoFailureException when the working copy is not in the pool
+     */
+    public synchronized File acquire(File workingCopy) throws InterruptedException, MojoFailureException {
+        File pooled = null;
+        for (File candidate : workingCopies) {
+            if (candidate.getAbsoluteFile().equals(workingCopy.getAbsoluteFile())) {
+                pooled = candidate;
+            }
+        }
+        if (pooled == null) {
+            throw new MojoFailureException("Working copy " + workingCopy + " is not one of the working copies "
+                    + workingCopies + ". Resume with the same number of workers and workersDirectory");
+        }
+        while (!available.contains(pooled)) {
+            wait();
+        }
+        available.remove(pooled);
+        return pooled;
+    }
+
+    public synchronized void release(File workingCopy) {
+        available.add(workingCopy);
+        notifyAll();
+    }
+
+    public int size() {
+        return workingCopies.size();
+    }
+
+    public boolean isShared() {
+        return workingCopies.size() == 1;
+    }
+}